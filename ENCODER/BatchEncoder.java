@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Encodes every image in a directory (or matching a glob) to an SSTV WAV file, Robot36 unless
+ * {@code --mode} names another mode.
+ * <p>
+ * Images go through two stages joined by a bounded queue. Preparers load each image, scale
+ * it to the mode's size and convert it to the planes the mode sends; writers synthesize the
+ * audio and stream it to the WAV file. Synthesis and writing stay one stage because the
+ * audio is generated into a reused buffer and drained to disk as it fills, so handing it on
+ * would mean holding whole transmissions in memory. Preparing takes a tenth or less of the
+ * time of writing, so there is one preparer for every {@link #WRITERS_PER_PREPARER} writers,
+ * and {@code --threads} sets the number of writers. Preparers block when the queue is full,
+ * so converted images never pile up faster than they are written.
+ * <pre>
+ *   java JpgToSstvEncoder --batch &lt;directory|glob&gt; [outputDirectory] [--threads N] [--mode NAME]
+ * </pre>
+ */
+public class BatchEncoder {
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp", ".gif"};
+    private static final int WRITERS_PER_PREPARER = 8;
+
+    /** A converted image on its way to a writer; one with no source tells the writer to stop. */
+    private static final class Prepared {
+        static final Prepared END = new Prepared(null, null);
+
+        final Path source;
+        final ChannelPlanes channels;
+
+        Prepared(Path source, ChannelPlanes channels) {
+            this.source = source;
+            this.channels = channels;
+        }
+    }
+
+    private final int threads;
+    private final Path outputDirectory;
+    private final SstvMode mode;
+
+    public BatchEncoder(int threads, Path outputDirectory, SstvMode mode) {
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.mode = mode;
+    }
+
+    public static void main(String[] args) {
+        String input = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        SstvMode mode = SstvMode.ROBOT_36;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Math.max(1, Integer.parseInt(args[++i]));
+            } else if ("--mode".equals(args[i]) && i + 1 < args.length) {
+                mode = SstvMode.forName(args[++i]);
+            } else if (input == null) {
+                input = args[i];
+            } else if (output == null) {
+                output = args[i];
+            }
+        }
+
+        if (input == null) {
+            System.err.println("Usage: JpgToSstvEncoder --batch <directory|glob> [outputDirectory] [--threads N] [--mode NAME]");
+            return;
+        }
+
+        try {
+            List<Path> images = findImages(input);
+            if (images.isEmpty()) {
+                System.err.println("No images found for " + input);
+                return;
+            }
+
+            Path outputDir = output != null ? Paths.get(output) : null;
+            if (outputDir != null) {
+                Files.createDirectories(outputDir);
+            }
+            new BatchEncoder(threads, outputDir, mode).encodeAll(images);
+        } catch (IOException e) {
+            System.err.println("Batch encoding failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch encoding interrupted");
+        }
+    }
+
+    public void encodeAll(List<Path> images) throws InterruptedException {
+        int preparers = Math.max(1, threads / WRITERS_PER_PREPARER);
+        ExecutorService preparePool = Executors.newFixedThreadPool(preparers);
+        ExecutorService writePool = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Prepared> prepared = new ArrayBlockingQueue<>(threads);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger preparing = new AtomicInteger(preparers);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        SstvMode.Timing timing = JpgToSstvEncoder.timingFor(mode);
+
+        System.out.println("Encoding " + images.size() + " images as " + mode + " on " + threads
+                + " threads, " + preparers + " preparing");
+        long start = System.nanoTime();
+
+        try {
+            for (int p = 0; p < preparers; p++) {
+                preparePool.execute(() -> {
+                    try {
+                        int index;
+                        while ((index = next.getAndIncrement()) < images.size()) {
+                            Path image = images.get(index);
+                            try {
+                                prepared.put(new Prepared(image, JpgToSstvEncoder.prepareImage(image.toString(), mode)));
+                            } catch (IOException | RuntimeException e) {
+                                failed.incrementAndGet();
+                                System.err.println("Failed to encode " + image + ": " + e.getMessage());
+                            }
+                        }
+                        // The last preparer out sends every writer its stop marker.
+                        if (preparing.decrementAndGet() == 0) {
+                            for (int w = 0; w < threads; w++) {
+                                prepared.put(Prepared.END);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            for (int w = 0; w < threads; w++) {
+                writePool.execute(() -> {
+                    try {
+                        Prepared item;
+                        while ((item = prepared.take()) != Prepared.END) {
+                            try {
+                                JpgToSstvEncoder.writeWav(timing, item.channels, outputFor(item.source));
+                                succeeded.incrementAndGet();
+                            } catch (IOException | RuntimeException e) {
+                                failed.incrementAndGet();
+                                System.err.println("Failed to encode " + item.source + ": " + e.getMessage());
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        } finally {
+            preparePool.shutdown();
+            writePool.shutdown();
+            try {
+                preparePool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                writePool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                preparePool.shutdownNow();
+                writePool.shutdownNow();
+                throw e;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Encoded %d images (%d failed) in %.2f s: %.2f images/sec%n",
+                succeeded.get(), failed.get(), seconds, succeeded.get() / seconds);
+    }
+
+    private Path outputFor(Path image) {
+        String name = image.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        Path dir = outputDirectory != null ? outputDirectory : image.toAbsolutePath().getParent();
+        return dir.resolve(base + ".wav");
+    }
+
+    static List<Path> findImages(String input) throws IOException {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(BatchEncoder::isImage).sorted().collect(Collectors.toList());
+            }
+        }
+
+        // Split "photos/2024/*.jpg" into the literal directory and the glob relative to it.
+        String[] parts = input.split("[/\\\\]");
+        Path root = Paths.get(".");
+        int globStart = 0;
+        for (int i = 0; i < parts.length - 1 && !parts[i].matches(".*[*?\\[{].*"); i++) {
+            root = root.resolve(parts[i].isEmpty() ? "/" : parts[i]);
+            globStart = i + 1;
+        }
+        String pattern = String.join("/", Arrays.copyOfRange(parts, globStart, parts.length));
+
+        List<Path> matches = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return matches;
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path base = root;
+        try (Stream<Path> files = Files.walk(base)) {
+            files.filter(Files::isRegularFile)
+                 .filter(p -> matcher.matches(base.relativize(p)))
+                 .filter(BatchEncoder::isImage)
+                 .sorted()
+                 .forEach(matches::add);
+        }
+        return matches;
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Flat planar channels of one image, one {@code float[width * height]} per
+ * {@link SstvMode.Channel}, row after row. Chroma may also be held at half width, each sample
+ * the mean of a horizontal pixel pair, for modes that send it that way.
+ */
+public final class ChannelPlanes {
+    private final int width;
+    private final int height;
+    private final float[][] full = new float[SstvMode.Channel.values().length][];
+    private final float[][] half = new float[SstvMode.Channel.values().length][];
+
+    public ChannelPlanes(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** The full-width plane of {@code channel}, or {@code null} if it was not converted. */
+    public float[] plane(SstvMode.Channel channel) {
+        return full[channel.ordinal()];
+    }
+
+    /** The plane of {@code channel} averaged over pixel pairs, {@code width / 2} wide, or {@code null}. */
+    public float[] halfPlane(SstvMode.Channel channel) {
+        return half[channel.ordinal()];
+    }
+
+    float[] allocate(SstvMode.Channel channel) {
+        return full[channel.ordinal()] = new float[width * height];
+    }
+
+    float[] allocateHalf(SstvMode.Channel channel) {
+        return half[channel.ordinal()] = new float[width / 2 * height];
+    }
+}
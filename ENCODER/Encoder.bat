@@ -1,3 +1,3 @@
 @echo off
-java -jar SstvEncoder.jar
+java --add-modules jdk.incubator.vector -jar SstvEncoder.jar
 pause
@@ -1,21 +1,16 @@
 import javax.imageio.ImageIO;
-import javax.sound.sampled.*;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-
-import static java.lang.Math.PI;
-import static java.lang.Math.sin;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class JpgToSstvEncoder {
 
-    private static final int IMAGE_WIDTH = 320;
-    private static final int IMAGE_HEIGHT = 240;
     private static final float SAMPLE_RATE = 44100.0f;
     private static final int BITS_PER_SAMPLE = 16;
     private static final int CHANNELS = 1;
@@ -25,30 +20,77 @@ public class JpgToSstvEncoder {
     private static final float BLACK_FREQUENCY = 1500.0f;
     private static final float WHITE_FREQUENCY = 2300.0f;
 
+    /** Each thread's streaming buffer, kept between files so batch runs do not churn direct memory. */
+    private static final ThreadLocal<ByteBuffer> STREAM_BUFFER = new ThreadLocal<>();
+
+    /** Takes the samples generated so far, before the buffer holding them is reused. */
+    interface Drain {
+        void drain(ByteBuffer samples) throws IOException;
+    }
+
     public static void main(String[] args) {
-        String inputImagePath  = (args.length > 0 && args[0] != null) ? args[0] : "input.jpg";
-        String outputAudioPath = (args.length > 1 && args[1] != null) ? args[1] : "output.wav";
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            BatchEncoder.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
-        try {
-            BufferedImage image = loadImage(inputImagePath);
-            if (image == null) {
-                System.err.println("Error loading image: " + inputImagePath);
-                return;
+        String inputImagePath = null;
+        String outputAudioPath = null;
+        SstvMode mode = SstvMode.ROBOT_36;
+        for (int i = 0; i < args.length; i++) {
+            if ("--mode".equals(args[i]) && i + 1 < args.length) {
+                mode = SstvMode.forName(args[++i]);
+            } else if (inputImagePath == null) {
+                inputImagePath = args[i];
+            } else if (outputAudioPath == null) {
+                outputAudioPath = args[i];
             }
+        }
+        if (inputImagePath == null) {
+            inputImagePath = "input.jpg";
+        }
+        if (outputAudioPath == null) {
+            outputAudioPath = "output.wav";
+        }
 
-            BufferedImage resizedImage = resizeImage(image, IMAGE_WIDTH, IMAGE_HEIGHT);
-            float[][][] yuvData = convertRgbToYuv(resizedImage);
-            byte[] sstvAudioData = generateRobot36Audio(yuvData);
-
-            saveWaveFile(sstvAudioData, outputAudioPath);
-            System.out.println("Successfully converted " + inputImagePath + " to " + outputAudioPath);
+        try {
+            encodeFile(inputImagePath, outputAudioPath, mode);
+            System.out.println("Successfully converted " + inputImagePath + " to " + outputAudioPath + " (" + mode + ")");
 
-        } catch (IOException | LineUnavailableException e) {
+        } catch (IOException e) {
             System.err.println("Error during conversion: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    static void encodeFile(String inputImagePath, String outputAudioPath, SstvMode mode) throws IOException {
+        writeWav(timingFor(mode), prepareImage(inputImagePath, mode), Paths.get(outputAudioPath));
+    }
+
+    /** {@code mode}'s timing tables at the rate the encoder writes. */
+    static SstvMode.Timing timingFor(SstvMode mode) {
+        return mode.timing((int) SAMPLE_RATE);
+    }
+
+    /** Loads an image, scales it to {@code mode}'s size and splits it into the planes the mode sends. */
+    static ChannelPlanes prepareImage(String inputImagePath, SstvMode mode) throws IOException {
+        BufferedImage image = loadImage(inputImagePath);
+        if (image == null) {
+            throw new IOException("Error loading image: " + inputImagePath);
+        }
+
+        BufferedImage resizedImage = resizeImage(image, mode.getWidth(), mode.getHeight());
+        return channelsFor(mode, resizedImage);
+    }
+
+    /** Streams the transmission of {@code channels} in {@code timing}'s mode to a WAV file. */
+    static void writeWav(SstvMode.Timing timing, ChannelPlanes channels, Path output) throws IOException {
+        long dataSize = (long) audioSampleCount(timing) * (BITS_PER_SAMPLE / 8);
+        try (WaveFileWriter wav = new WaveFileWriter(output, (int) SAMPLE_RATE, dataSize)) {
+            writeAudio(timing, channels, streamBuffer(longestLine(timing) * (BITS_PER_SAMPLE / 8)), wav::write);
+        }
+    }
+
     private static BufferedImage loadImage(String path) throws IOException {
         return ImageIO.read(new File(path));
     }
@@ -61,133 +103,199 @@ public class JpgToSstvEncoder {
         return resizedImage;
     }
 
-    private static float[][][] convertRgbToYuv(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        float[][][] yuvData = new float[3][height][width];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
+    private static ChannelPlanes channelsFor(SstvMode mode, BufferedImage image) {
+        return mode.getColorSpace() == SstvMode.ColorSpace.YUV ? PlaneConverter.yuv(image, mode) : PlaneConverter.rgb(image);
+    }
 
-                float y_val = 0.299f * r + 0.587f * g + 0.114f * b;
-                float u_val = (b - y_val) * 0.492f;
-                float v_val = (r - y_val) * 0.877f;
+    /**
+     * Calibration header, VIS code and every line of {@code timing}'s mode, generated into
+     * {@code buffer} and handed to {@code drain} whenever it fills and once at the end. The
+     * buffer must hold the longest line. Tone and pixel lengths come from the timing tables,
+     * so only the pixel values are worked out per line.
+     */
+    private static void writeAudio(SstvMode.Timing timing, ChannelPlanes channels, ByteBuffer buffer, Drain drain)
+            throws IOException {
+        SstvMode mode = timing.getMode();
+        SampleBuffer out = new SampleBuffer(buffer, drain);
+        Oscillator oscillator = Oscillator.fromSystemProperties(SAMPLE_RATE);
+        int width = channels.getWidth();
+        float[] averaged = new float[width];
+        float[] downsampled = new float[width];
+
+        appendTone(out, 1900, samplesFor(300), oscillator);
+        appendTone(out, 1200, samplesFor(10), oscillator);
+        appendTone(out, 1900, samplesFor(300), oscillator);
+
+        appendVisCode(out, mode.getVisCode(), oscillator);
+
+        for (int i = 0; i < mode.getPreambleLength(); i++) {
+            appendTone(out, mode.getPreamble(i).getFrequency(), timing.getPreambleLength(i), oscillator);
+        }
 
-                yuvData[0][y][x] = y_val;
-                yuvData[1][y][x] = u_val + 128;
-                yuvData[2][y][x] = v_val + 128;
+        for (int line = 0; line < mode.getLines(); line++) {
+            int layout = line % mode.getLayoutCount();
+            int firstRow = line * mode.getRowsPerLine();
+            for (int s = 0; s < mode.getSegmentCount(layout); s++) {
+                SstvMode.Segment segment = mode.getSegment(layout, s);
+                if (!segment.isScan()) {
+                    appendTone(out, segment.getFrequency(), timing.getLength(layout, s), oscillator);
+                    continue;
+                }
+
+                SstvMode.Channel channel = segment.getChannel();
+                int pixels = segment.getPixels();
+                int[] pixelStarts = timing.getPixelStarts(layout, s);
+                float[] half = channels.halfPlane(channel);
+                if (segment.getRow() != SstvMode.Segment.ALL_ROWS && pixels == width / 2 && half != null) {
+                    appendScanline(out, half, (firstRow + segment.getRow()) * pixels, pixelStarts, oscillator);
+                    continue;
+                }
+
+                float[] data = channels.plane(channel);
+                int offset;
+                if (segment.getRow() == SstvMode.Segment.ALL_ROWS) {
+                    averageRows(data, width, firstRow, mode.getRowsPerLine(), averaged);
+                    data = averaged;
+                    offset = 0;
+                } else {
+                    offset = (firstRow + segment.getRow()) * width;
+                }
+                if (pixels < width) {
+                    downsampleLine(data, offset, width, downsampled, pixels);
+                    data = downsampled;
+                    offset = 0;
+                }
+                appendScanline(out, data, offset, pixelStarts, oscillator);
             }
         }
-        return yuvData;
-    }
-
-    private static byte[] generateRobot36Audio(float[][][] yuvData) throws IOException, LineUnavailableException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        double[] phaseHolder = new double[]{0.0};
 
-        appendTone(out, 1900, 300, phaseHolder);
-        appendTone(out, 1200, 10, phaseHolder);
-        appendTone(out, 1900, 300, phaseHolder);
-
-        appendVisCode(out, 8, phaseHolder);
+        out.drain();
+    }
 
-        for (int line = 0; line < IMAGE_HEIGHT; line++) {
-            appendTone(out, 1200, 9, phaseHolder);
-            appendTone(out, 1500, 3, phaseHolder);
+    private static int audioSampleCount(SstvMode.Timing timing) {
+        return headerSampleCount() + timing.getTransmissionLength();
+    }
 
-            appendScanline(out, yuvData[0][line], 88, phaseHolder);
+    private static int longestLine(SstvMode.Timing timing) {
+        int longest = 0;
+        for (int l = 0; l < timing.getMode().getLayoutCount(); l++) {
+            longest = Math.max(longest, timing.getLineLength(l));
+        }
+        return longest;
+    }
 
-            if ((line % 2) == 0) {
-                appendTone(out, 1500, 4.5f, phaseHolder);
-                appendTone(out, 1900, 1.5f, phaseHolder);
-                float[] vLine = downsampleLine(yuvData[2][line], IMAGE_WIDTH / 2);
-                appendScanline(out, vLine, 44, phaseHolder);
-            } else {
-                appendTone(out, 2300, 4.5f, phaseHolder);
-                appendTone(out, 1900, 1.5f, phaseHolder);
-                float[] uLine = downsampleLine(yuvData[1][line], IMAGE_WIDTH / 2);
-                appendScanline(out, uLine, 44, phaseHolder);
-            }
+    private static ByteBuffer streamBuffer(int bytes) {
+        ByteBuffer buffer = STREAM_BUFFER.get();
+        if (buffer == null || buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            STREAM_BUFFER.set(buffer);
         }
+        buffer.clear();
+        return buffer;
+    }
 
-        return out.toByteArray();
+    private static int headerSampleCount() {
+        return 2 * samplesFor(300) + samplesFor(10) + 9 * samplesFor(30);
     }
 
-    private static void appendVisCode(ByteArrayOutputStream out, int visCode, double[] phaseHolder) throws IOException {
-        appendTone(out, 1200, 30, phaseHolder);
+    private static int samplesFor(float durationMs) {
+        return (int) (durationMs / 1000 * SAMPLE_RATE);
+    }
+
+    private static void appendVisCode(SampleBuffer out, int visCode, Oscillator oscillator) throws IOException {
+        int bit = samplesFor(30);
+        appendTone(out, 1200, bit, oscillator);
 
         for (int i = 0; i < 7; i++) {
-            int bit = (visCode >> i) & 1;
-            appendTone(out, bit == 1 ? 1100 : 1300, 30, phaseHolder);
+            appendTone(out, ((visCode >> i) & 1) == 1 ? 1100 : 1300, bit, oscillator);
         }
 
-        appendTone(out, 1200, 30, phaseHolder);
+        appendTone(out, 1200, bit, oscillator);
     }
 
-    private static void appendScanline(ByteArrayOutputStream out, float[] pixelData, float durationMs, double[] phaseHolder) throws IOException {
-        int numSamples = (int) (durationMs / 1000 * SAMPLE_RATE);
-        int numPixels = pixelData.length;
-        if (numPixels == 0 || numSamples == 0) return;
-
-        double phase = phaseHolder[0];
-        for (int i = 0; i < numSamples; i++) {
-            int index = Math.min((int) ((float) i / numSamples * numPixels), numPixels - 1);
-            float pixel = pixelData[index];
-            float freq = BLACK_FREQUENCY + (pixel / 255.0f) * (WHITE_FREQUENCY - BLACK_FREQUENCY);
-
-            short sample = (short) (sin(phase) * Short.MAX_VALUE);
-            phase += 2 * PI * freq / SAMPLE_RATE;
-
-            ByteBuffer buffer = ByteBuffer.allocate(2)
-                    .order(ByteOrder.LITTLE_ENDIAN)
-                    .putShort(sample);
-            out.write(buffer.array());
+    /**
+     * Pixel {@code p}, at {@code pixelData[offset + p]}, is held for samples {@code pixelStarts[p]}
+     * up to {@code pixelStarts[p + 1]}.
+     */
+    private static void appendScanline(SampleBuffer out, float[] pixelData, int offset, int[] pixelStarts,
+                                       Oscillator oscillator) throws IOException {
+        out.reserve(pixelStarts[pixelStarts.length - 1] - pixelStarts[0]);
+        for (int p = 0; p + 1 < pixelStarts.length; p++) {
+            float freq = BLACK_FREQUENCY + (pixelData[offset + p] / 255.0f) * (WHITE_FREQUENCY - BLACK_FREQUENCY);
+            int increment = oscillator.phaseIncrement(freq);
+            for (int i = pixelStarts[p]; i < pixelStarts[p + 1]; i++) {
+                out.put(oscillator.next(increment));
+            }
         }
-        phaseHolder[0] = phase % (2 * PI);
     }
 
-    private static void appendTone(ByteArrayOutputStream out, float freq, float durationMs, double[] phaseHolder) throws IOException {
-        int numSamples = (int) (durationMs / 1000 * SAMPLE_RATE);
-        double phase = phaseHolder[0];
+    /** Tones may be longer than the buffer, so they are written in as many pieces as it takes. */
+    private static void appendTone(SampleBuffer out, double freq, int numSamples, Oscillator oscillator)
+            throws IOException {
+        int increment = oscillator.phaseIncrement(freq);
 
-        for (int i = 0; i < numSamples; i++) {
-            short sample = (short) (sin(phase) * Short.MAX_VALUE);
-            phase += 2 * PI * freq / SAMPLE_RATE;
+        while (numSamples > 0) {
+            out.reserve(1);
+            int chunk = Math.min(numSamples, out.room());
+            for (int i = 0; i < chunk; i++) {
+                out.put(oscillator.next(increment));
+            }
+            numSamples -= chunk;
+        }
+    }
 
-            ByteBuffer buffer = ByteBuffer.allocate(2)
-                    .order(ByteOrder.LITTLE_ENDIAN)
-                    .putShort(sample);
-            out.write(buffer.array());
+    private static void averageRows(float[] plane, int width, int firstRow, int rows, float[] average) {
+        for (int x = 0; x < width; x++) {
+            float sum = 0;
+            for (int r = firstRow; r < firstRow + rows; r++) {
+                sum += plane[r * width + x];
+            }
+            average[x] = sum / rows;
         }
-        phaseHolder[0] = phase % (2 * PI);
     }
 
-    private static float[] downsampleLine(float[] line, int targetWidth) {
-        float[] downsampled = new float[targetWidth];
-        float ratio = (float) line.length / targetWidth;
+    private static void downsampleLine(float[] line, int offset, int length, float[] downsampled, int targetWidth) {
+        float ratio = (float) length / targetWidth;
 
         for (int i = 0; i < targetWidth; i++) {
             int start = (int) (i * ratio);
             int end = (int) ((i + 1) * ratio);
-            end = Math.min(end, line.length);
+            end = Math.min(end, length);
 
             float sum = 0;
-            for (int j = start; j < end; j++) sum += line[j];
+            for (int j = start; j < end; j++) sum += line[offset + j];
             downsampled[i] = sum / (end - start);
         }
-        return downsampled;
     }
 
-    private static void saveWaveFile(byte[] audioData, String filename) throws IOException {
-        AudioFormat format = new AudioFormat(SAMPLE_RATE, BITS_PER_SAMPLE, CHANNELS, SIGNED, BIG_ENDIAN);
-        try (AudioInputStream stream = new AudioInputStream(
-                new ByteArrayInputStream(audioData), format, audioData.length)) {
-            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, new File(filename));
+    /** 16-bit samples going into a buffer that is drained whenever the next piece does not fit. */
+    private static final class SampleBuffer {
+        private final ByteBuffer buffer;
+        private final Drain drain;
+
+        SampleBuffer(ByteBuffer buffer, Drain drain) {
+            this.buffer = buffer;
+            this.drain = drain;
+        }
+
+        int room() {
+            return buffer.remaining() / 2;
+        }
+
+        void reserve(int samples) throws IOException {
+            if (room() < samples) {
+                drain();
+            }
+        }
+
+        void put(double value) {
+            buffer.putShort((short) (value * Short.MAX_VALUE));
+        }
+
+        void drain() throws IOException {
+            buffer.flip();
+            drain.drain(buffer);
+            buffer.clear();
         }
     }
-}
\ No newline at end of file
+}
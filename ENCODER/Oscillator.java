@@ -0,0 +1,76 @@
+import java.util.Locale;
+
+/**
+ * Numerically controlled oscillator with a 32-bit integer phase accumulator. The phase wraps
+ * for free on overflow, so it never grows and the sine is always taken of a small argument.
+ * <p>
+ * The sine can come from {@link Math#sin}, a lookup table, or a linearly interpolated lookup
+ * table; the mode is chosen with the {@code sstv.oscillator} system property
+ * ({@code exact}, {@code table}, {@code interpolated}).
+ */
+public class Oscillator {
+    public enum Mode { EXACT, TABLE, INTERPOLATED }
+
+    private static final double PHASE_SCALE = 4294967296.0;
+    private static final double RADIANS_PER_STEP = 2 * Math.PI / PHASE_SCALE;
+    private static final int DEFAULT_TABLE_BITS = 12;
+
+    private final Mode mode;
+    private final double sampleRate;
+    private final int tableBits;
+    private final int fractionShift;
+    private final double[] table;
+    private int phase;
+
+    public Oscillator(double sampleRate, Mode mode, int tableBits) {
+        if (tableBits < 2 || tableBits > 24) {
+            throw new IllegalArgumentException("Table bits must be between 2 and 24: " + tableBits);
+        }
+        this.sampleRate = sampleRate;
+        this.mode = mode;
+        this.tableBits = tableBits;
+        this.fractionShift = 32 - tableBits;
+
+        int size = 1 << tableBits;
+        table = new double[size + 1];
+        for (int i = 0; i <= size; i++) {
+            table[i] = Math.sin(2 * Math.PI * i / size);
+        }
+    }
+
+    public static Oscillator fromSystemProperties(double sampleRate) {
+        String name = System.getProperty("sstv.oscillator", "exact");
+        int bits = Integer.getInteger("sstv.oscillator.tableBits", DEFAULT_TABLE_BITS);
+        return new Oscillator(sampleRate, Mode.valueOf(name.trim().toUpperCase(Locale.ROOT)), bits);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int phaseIncrement(double frequency) {
+        return (int) (long) Math.rint(frequency / sampleRate * PHASE_SCALE);
+    }
+
+    /** Returns the current sample and advances the phase by {@code increment}. */
+    public double next(int increment) {
+        double value = valueAt(phase);
+        phase += increment;
+        return value;
+    }
+
+    private double valueAt(int p) {
+        switch (mode) {
+            case TABLE:
+                return table[p >>> fractionShift];
+            case INTERPOLATED: {
+                int index = p >>> fractionShift;
+                double fraction = (p << tableBits >>> 1) * (1.0 / 2147483648.0);
+                double a = table[index];
+                return a + (table[index + 1] - a) * fraction;
+            }
+            default:
+                return Math.sin((p & 0xFFFFFFFFL) * RADIANS_PER_STEP);
+        }
+    }
+}
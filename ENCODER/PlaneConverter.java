@@ -0,0 +1,188 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Splits an image into the flat planar channels the encoder sends. Packed RGB is read straight
+ * from the image's {@code int[]} raster where it has one, rather than through {@code getRGB}
+ * per pixel. Modes that send chroma at half width get only half-width U and V planes, each
+ * pixel pair averaged in the same pass that computes it; the others get full-width planes.
+ * <p>
+ * With the {@code jdk.incubator.vector} module present (run with
+ * {@code --add-modules jdk.incubator.vector}) rows are converted with the Vector API, and with a
+ * scalar loop otherwise or when {@code sstv.yuv=scalar} is set. Both do the same float
+ * operations in the same order, so the planes, and the audio made from them, are identical.
+ */
+public final class PlaneConverter {
+    private static final boolean VECTOR_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private PlaneConverter() {
+    }
+
+    public static boolean isVectorAvailable() {
+        return VECTOR_AVAILABLE;
+    }
+
+    /** True if {@link #yuv(BufferedImage)} uses the Vector API. */
+    public static boolean usesVector() {
+        return VECTOR_AVAILABLE && !"scalar".equalsIgnoreCase(System.getProperty("sstv.yuv", "vector").trim());
+    }
+
+    public static ChannelPlanes yuv(BufferedImage image, SstvMode mode) {
+        return yuv(image, sendsHalfWidthChroma(mode), usesVector());
+    }
+
+    /**
+     * True if every U and V scan of {@code mode} covers half the image width for a single row,
+     * so the encoder can send it straight from a half-width plane.
+     */
+    static boolean sendsHalfWidthChroma(SstvMode mode) {
+        boolean any = false;
+        for (int layout = 0; layout < mode.getLayoutCount(); layout++) {
+            for (int s = 0; s < mode.getSegmentCount(layout); s++) {
+                SstvMode.Segment segment = mode.getSegment(layout, s);
+                if (!segment.isScan() || segment.getChannel() == SstvMode.Channel.Y) {
+                    continue;
+                }
+                if (segment.getRow() == SstvMode.Segment.ALL_ROWS || segment.getPixels() != mode.getWidth() / 2) {
+                    return false;
+                }
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Y, U and V planes of {@code image}, with U and V only at half width if {@code halfChroma}
+     * is set and only at full width otherwise.
+     */
+    public static ChannelPlanes yuv(BufferedImage image, boolean halfChroma, boolean vector) {
+        if (vector && !VECTOR_AVAILABLE) {
+            throw new IllegalStateException("Vector API not available; run with --add-modules jdk.incubator.vector");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int halfWidth = width / 2;
+        ChannelPlanes planes = new ChannelPlanes(width, height);
+        float[] y = planes.allocate(SstvMode.Channel.Y);
+        float[] u = halfChroma ? planes.allocateHalf(SstvMode.Channel.U) : planes.allocate(SstvMode.Channel.U);
+        float[] v = halfChroma ? planes.allocateHalf(SstvMode.Channel.V) : planes.allocate(SstvMode.Channel.V);
+
+        Rows rows = new Rows(image);
+        for (int row = 0; row < height; row++) {
+            int in = rows.offset(row);
+            int out = row * width;
+            if (halfChroma) {
+                int halfOut = row * halfWidth;
+                int done = vector ? VectorPlaneConverter.yuvHalfRow(rows.pixels, in, width, y, u, v, out, halfOut) : 0;
+                yuvHalfRow(rows.pixels, in + done, width - done, y, u, v, out + done, halfOut + done / 2);
+            } else {
+                int done = vector ? VectorPlaneConverter.yuvRow(rows.pixels, in, width, y, u, v, out) : 0;
+                yuvRow(rows.pixels, in + done, width - done, y, u, v, out + done);
+            }
+        }
+        return planes;
+    }
+
+    /** R, G and B planes of {@code image}. */
+    public static ChannelPlanes rgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ChannelPlanes planes = new ChannelPlanes(width, height);
+        float[] r = planes.allocate(SstvMode.Channel.R);
+        float[] g = planes.allocate(SstvMode.Channel.G);
+        float[] b = planes.allocate(SstvMode.Channel.B);
+
+        Rows rows = new Rows(image);
+        for (int row = 0; row < height; row++) {
+            int in = rows.offset(row);
+            int out = row * width;
+            for (int x = 0; x < width; x++) {
+                int p = rows.pixels[in + x];
+                r[out + x] = (p >> 16) & 0xFF;
+                g[out + x] = (p >> 8) & 0xFF;
+                b[out + x] = p & 0xFF;
+            }
+        }
+        return planes;
+    }
+
+    static void yuvRow(int[] rgb, int in, int count, float[] y, float[] u, float[] v, int out) {
+        for (int x = 0; x < count; x++) {
+            int p = rgb[in + x];
+            int r = (p >> 16) & 0xFF;
+            int g = (p >> 8) & 0xFF;
+            int b = p & 0xFF;
+            float luma = 0.299f * r + 0.587f * g + 0.114f * b;
+            y[out + x] = luma;
+            u[out + x] = (b - luma) * 0.492f + 128;
+            v[out + x] = (r - luma) * 0.877f + 128;
+        }
+    }
+
+    /**
+     * Like {@link #yuvRow}, but writes U and V at {@code halfOut} as the mean of each pixel pair,
+     * starting from an even pixel. An odd pixel left at the end only contributes to Y.
+     */
+    static void yuvHalfRow(int[] rgb, int in, int count, float[] y, float[] uHalf, float[] vHalf, int out, int halfOut) {
+        for (int x = 0; x + 1 < count; x += 2) {
+            int p0 = rgb[in + x];
+            int r0 = (p0 >> 16) & 0xFF;
+            int b0 = p0 & 0xFF;
+            float luma0 = 0.299f * r0 + 0.587f * ((p0 >> 8) & 0xFF) + 0.114f * b0;
+            int p1 = rgb[in + x + 1];
+            int r1 = (p1 >> 16) & 0xFF;
+            int b1 = p1 & 0xFF;
+            float luma1 = 0.299f * r1 + 0.587f * ((p1 >> 8) & 0xFF) + 0.114f * b1;
+            y[out + x] = luma0;
+            y[out + x + 1] = luma1;
+            uHalf[halfOut + x / 2] = ((b0 - luma0) * 0.492f + 128 + ((b1 - luma1) * 0.492f + 128)) / 2;
+            vHalf[halfOut + x / 2] = ((r0 - luma0) * 0.877f + 128 + ((r1 - luma1) * 0.877f + 128)) / 2;
+        }
+        if ((count & 1) != 0) {
+            int p = rgb[in + count - 1];
+            y[out + count - 1] = 0.299f * ((p >> 16) & 0xFF) + 0.587f * ((p >> 8) & 0xFF) + 0.114f * (p & 0xFF);
+        }
+    }
+
+    /** Packed RGB rows of an image: its own raster if it is int RGB, otherwise one row at a time. */
+    private static final class Rows {
+        private final BufferedImage image;
+        private final int[] pixels;
+        private final int base;
+        private final int stride;
+        private final boolean direct;
+
+        Rows(BufferedImage image) {
+            this.image = image;
+            WritableRaster raster = image.getRaster();
+            int type = image.getType();
+            if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                    && raster.getDataBuffer() instanceof DataBufferInt
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+                base = raster.getDataBuffer().getOffset()
+                        - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+                direct = true;
+            } else {
+                stride = 0;
+                pixels = new int[image.getWidth()];
+                base = 0;
+                direct = false;
+            }
+        }
+
+        /** Index of the first pixel of {@code row} in {@link #pixels}. */
+        int offset(int row) {
+            if (direct) {
+                return base + row * stride;
+            }
+            image.getRGB(0, row, pixels.length, 1, pixels, 0, pixels.length);
+            return 0;
+        }
+    }
+}
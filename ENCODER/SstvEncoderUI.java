@@ -12,6 +12,7 @@ import java.io.IOException;
 public class SstvEncoderUI extends JFrame {
     private JTextField inputPathField;
     private JTextField outputPathField;
+    private JComboBox<SstvMode> modeBox;
     private JLabel imagePreview;
     private JButton browseInputButton;
     private JButton browseOutputButton;
@@ -56,6 +57,12 @@ public class SstvEncoderUI extends JFrame {
         gbc.gridx = 2; gbc.weightx = 0.1;
         filePanel.add(browseOutputButton, gbc);
 
+        modeBox = new JComboBox<>(SstvMode.all().toArray(new SstvMode[0]));
+        gbc.gridx = 0; gbc.gridy = 2; gbc.weightx = 0.1;
+        filePanel.add(new JLabel("Mode:"), gbc);
+        gbc.gridx = 1; gbc.weightx = 0.8;
+        filePanel.add(modeBox, gbc);
+
         imagePreview = new JLabel();
         imagePreview.setPreferredSize(new Dimension(320, 240));
         imagePreview.setBorder(BorderFactory.createLineBorder(Color.GRAY));
@@ -117,6 +124,7 @@ public class SstvEncoderUI extends JFrame {
     private void onConvert(ActionEvent e) {
         String inputPath = inputPathField.getText().trim();
         String outputPath = outputPathField.getText().trim();
+        SstvMode mode = (SstvMode) modeBox.getSelectedItem();
         if (inputPath.isEmpty() || outputPath.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select both input and output paths.", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
@@ -131,7 +139,7 @@ public class SstvEncoderUI extends JFrame {
             protected Void doInBackground() {
                 try {
 
-                    JpgToSstvEncoder.main(new String[]{inputPath, outputPath});
+                    JpgToSstvEncoder.main(new String[]{inputPath, outputPath, "--mode", mode.getName()});
                     publish("Conversion complete: " + outputPath);
                 } catch (Exception ex) {
                     publish("Error: " + ex.getMessage());
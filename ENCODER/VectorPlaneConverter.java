@@ -0,0 +1,88 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API row conversion for {@link PlaneConverter}. Only loaded once the
+ * {@code jdk.incubator.vector} module is known to be present.
+ */
+final class VectorPlaneConverter {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    /**
+     * Gathering the even (or odd) lanes of two vectors side by side: each vector is permuted so
+     * its even lanes land in the low half and wrap into the high half, and the upper half of
+     * the result is taken from the second vector.
+     */
+    private static final VectorShuffle<Float> EVEN = VectorShuffle.fromOp(FLOATS, i -> 2 * i % FLOATS.length());
+    private static final VectorShuffle<Float> ODD = VectorShuffle.fromOp(FLOATS, i -> (2 * i + 1) % FLOATS.length());
+    private static final VectorMask<Float> UPPER = VectorMask.fromLong(FLOATS, -1L << FLOATS.length() / 2);
+
+    private VectorPlaneConverter() {
+    }
+
+    /**
+     * Converts whole vectors of {@code rgb} from {@code in} to Y, U and V at {@code out}, and
+     * returns how many pixels it did; the caller converts the remainder.
+     */
+    static int yuvRow(int[] rgb, int in, int count, float[] y, float[] u, float[] v, int out) {
+        int bound = INTS.loopBound(count);
+        for (int x = 0; x < bound; x += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, rgb, in + x);
+            FloatVector r = (FloatVector) p.lanewise(VectorOperators.LSHR, 16).and(0xFF).convert(VectorOperators.I2F, 0);
+            FloatVector g = (FloatVector) p.lanewise(VectorOperators.LSHR, 8).and(0xFF).convert(VectorOperators.I2F, 0);
+            FloatVector b = (FloatVector) p.and(0xFF).convert(VectorOperators.I2F, 0);
+
+            FloatVector luma = r.mul(0.299f).add(g.mul(0.587f)).add(b.mul(0.114f));
+            luma.intoArray(y, out + x);
+            b.sub(luma).mul(0.492f).add(128f).intoArray(u, out + x);
+            r.sub(luma).mul(0.877f).add(128f).intoArray(v, out + x);
+        }
+        return bound;
+    }
+
+    /**
+     * Converts pairs of whole vectors of {@code rgb} from {@code in}, writing Y at {@code out} and
+     * the mean of each pixel pair's U and V at {@code halfOut}, and returns how many pixels it did.
+     */
+    static int yuvHalfRow(int[] rgb, int in, int count, float[] y, float[] uHalf, float[] vHalf, int out, int halfOut) {
+        int lanes = INTS.length();
+        int bound = count - count % (2 * lanes);
+        for (int x = 0; x < bound; x += 2 * lanes) {
+            IntVector p0 = IntVector.fromArray(INTS, rgb, in + x);
+            IntVector p1 = IntVector.fromArray(INTS, rgb, in + x + lanes);
+            FloatVector r0 = channel(p0, 16);
+            FloatVector b0 = channel(p0, 0);
+            FloatVector r1 = channel(p1, 16);
+            FloatVector b1 = channel(p1, 0);
+
+            FloatVector luma0 = r0.mul(0.299f).add(channel(p0, 8).mul(0.587f)).add(b0.mul(0.114f));
+            FloatVector luma1 = r1.mul(0.299f).add(channel(p1, 8).mul(0.587f)).add(b1.mul(0.114f));
+            luma0.intoArray(y, out + x);
+            luma1.intoArray(y, out + x + lanes);
+
+            FloatVector u0 = b0.sub(luma0).mul(0.492f).add(128f);
+            FloatVector u1 = b1.sub(luma1).mul(0.492f).add(128f);
+            pairMeans(u0, u1).intoArray(uHalf, halfOut + x / 2);
+            FloatVector v0 = r0.sub(luma0).mul(0.877f).add(128f);
+            FloatVector v1 = r1.sub(luma1).mul(0.877f).add(128f);
+            pairMeans(v0, v1).intoArray(vHalf, halfOut + x / 2);
+        }
+        return bound;
+    }
+
+    /** The mean of each adjacent pair of lanes across {@code low} followed by {@code high}. */
+    private static FloatVector pairMeans(FloatVector low, FloatVector high) {
+        FloatVector even = low.rearrange(EVEN).blend(high.rearrange(EVEN), UPPER);
+        FloatVector odd = low.rearrange(ODD).blend(high.rearrange(ODD), UPPER);
+        return even.add(odd).div(2f);
+    }
+
+    /** The 8-bit channel {@code shift} bits up in each packed pixel, as floats. */
+    private static FloatVector channel(IntVector pixels, int shift) {
+        return (FloatVector) pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF).convert(VectorOperators.I2F, 0);
+    }
+}
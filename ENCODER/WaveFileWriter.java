@@ -0,0 +1,74 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes 16-bit mono PCM to a WAV file as it is generated. The RIFF header goes out first with
+ * the data length the caller expects, and samples follow through {@link #write} in whatever
+ * pieces the caller drains, so only the caller's buffer is ever held in memory. If fewer or
+ * more bytes arrive than announced, {@link #close} rewrites the lengths to match.
+ */
+public final class WaveFileWriter implements Closeable {
+    private static final int HEADER_SIZE = 44;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int CHANNELS = 1;
+
+    private final FileChannel channel;
+    private final long announced;
+    private long written;
+
+    public WaveFileWriter(Path path, int sampleRate, long dataSize) throws IOException {
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        announced = dataSize;
+        try {
+            ByteBuffer header = header(sampleRate, dataSize);
+            while (header.hasRemaining()) channel.write(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Writes everything left in {@code samples}. */
+    public void write(ByteBuffer samples) throws IOException {
+        written += samples.remaining();
+        while (samples.hasRemaining()) channel.write(samples);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (written != announced) {
+                writeSize(4, HEADER_SIZE - 8 + written);
+                writeSize(40, written);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeSize(long position, long size) throws IOException {
+        ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) Math.min(size, 0xFFFFFFFFL));
+        field.flip();
+        while (field.hasRemaining()) channel.write(field, position + field.position());
+    }
+
+    private static ByteBuffer header(int sampleRate, long dataSize) {
+        int blockAlign = CHANNELS * BITS_PER_SAMPLE / 8;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (HEADER_SIZE - 8 + dataSize))
+              .put(new byte[]{'W', 'A', 'V', 'E'})
+              .put(new byte[]{'f', 'm', 't', ' '}).putInt(16)
+              .putShort((short) 1).putShort((short) CHANNELS)
+              .putInt(sampleRate).putInt(sampleRate * blockAlign)
+              .putShort((short) blockAlign).putShort((short) BITS_PER_SAMPLE)
+              .put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of audio samples. The capture thread
+ * writes, the decode thread reads; neither ever blocks the other.
+ */
+public class AudioRingBuffer {
+    private final double[] buffer;
+    private final int mask;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong droppedSamples = new AtomicLong();
+    private volatile boolean closed;
+
+    public AudioRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        buffer = new double[capacity];
+        mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Writes as many samples as fit; the rest are dropped and counted, since a live capture
+     * cannot wait for a slow consumer.
+     */
+    public int write(double[] src, int offset, int length) {
+        long write = writePosition.get();
+        long free = buffer.length - (write - readPosition.get());
+        int n = (int) Math.min(length, free);
+
+        int start = (int) (write & mask);
+        int first = Math.min(n, buffer.length - start);
+        System.arraycopy(src, offset, buffer, start, first);
+        System.arraycopy(src, offset + first, buffer, 0, n - first);
+
+        writePosition.lazySet(write + n);
+        if (n < length) {
+            droppedSamples.addAndGet(length - n);
+        }
+        return n;
+    }
+
+    /** Reads up to {@code length} samples without blocking, returning how many were read. */
+    public int read(double[] dst, int offset, int length) {
+        long read = readPosition.get();
+        int n = (int) Math.min(length, writePosition.get() - read);
+
+        int start = (int) (read & mask);
+        int first = Math.min(n, buffer.length - start);
+        System.arraycopy(buffer, start, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, n - first);
+
+        readPosition.lazySet(read + n);
+        return n;
+    }
+
+    public int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples.get();
+    }
+
+    /** Marks the end of the stream; readers drain what is left and then see {@link #isFinished()}. */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isFinished() {
+        return closed && available() == 0;
+    }
+}
@@ -0,0 +1,224 @@
+import java.util.Arrays;
+
+/**
+ * Decimating FM demodulator for the SSTV band, whose tones span only 1100 to 2300 Hz. The input
+ * is band-passed to {@link #PASS_LOW} to {@link #PASS_HIGH} Hz, keeping only positive frequencies,
+ * and kept every {@code factor}th sample, then each phase step is measured with the
+ * conjugate-product discriminator, so everything after the filter runs at the reduced rate.
+ * <p>
+ * The band-pass is a low-pass shifted up to the middle of the band, so each kept output is one
+ * complex dot product over the real input, evaluated only where an output is kept, and the
+ * rotation by {@link #CENTRE_FREQ} between two outputs is taken out of their product to centre
+ * the measured range on the tones. Rejecting negative frequencies replaces the Hilbert transform.
+ * <p>
+ * Frequency {@code k} lies halfway between input samples {@code k * factor} and
+ * {@code k * factor + 1}, as value {@code k * factor} of
+ * {@link SstvDecoder#calculateInstantaneousFrequency} does, so positions scale exactly between the
+ * two rates. An instance streams, carrying its history across calls; {@link #finish} flushes the
+ * last outputs once the input has ended.
+ */
+public class BasebandDemodulator {
+    public static final double CENTRE_FREQ = 1900.0;
+    /**
+     * Edges of the passband. It reaches well above the tones, where there is nothing to reject
+     * but noise, so the sidebands of the fastest modes survive.
+     */
+    private static final double PASS_LOW = 900.0;
+    private static final double PASS_HIGH = 4900.0;
+    /**
+     * Width of the filter's transition bands, which sets its length. The stopband starts at
+     * -1100 Hz, the mirror image of the lowest tone.
+     */
+    private static final double TRANSITION = 2000.0;
+    /**
+     * Lowest rate the front end decimates to; it keeps the aliases of the upper transition band
+     * below the passband.
+     */
+    private static final int MIN_OUTPUT_RATE = 11025;
+    private static final int BLOCK = 1 << 16;
+
+    private final int factor;
+    private final int outputRate;
+    private final int taps;
+    /** Real and imaginary taps, oldest input first. */
+    private final double[] cosTaps;
+    private final double[] sinTaps;
+    private final double rotationRe;
+    private final double rotationIm;
+
+    private double[] buffer;
+    private int filled;
+    private double previousRe;
+    private double previousIm;
+    private boolean primed;
+    private long consumed;
+    private long produced;
+
+    public BasebandDemodulator(int sampleRate, int factor) {
+        if (factor < 1 || sampleRate % factor != 0) {
+            throw new IllegalArgumentException("Decimation " + factor + " does not divide " + sampleRate + " Hz");
+        }
+        this.factor = factor;
+        this.outputRate = sampleRate / factor;
+
+        // Output m is centred on input m * factor + (1 - factor) / 2, which is a whole sample
+        // when taps + factor is even; the first windows reach back into silence before the input.
+        int length = (int) Math.ceil(3.3 * sampleRate / TRANSITION);
+        taps = length + (length + factor) % 2;
+        int lead = (taps + factor - 2) / 2;
+
+        double cutoff = ((PASS_HIGH - PASS_LOW) / 2 + TRANSITION / 2) / sampleRate;
+        double shift = Math.PI * (PASS_LOW + PASS_HIGH) / sampleRate;
+        double omega = 2 * Math.PI * CENTRE_FREQ / sampleRate;
+        double[] lowPass = new double[taps];
+        double sum = 0;
+        for (int j = 0; j < taps; j++) {
+            double t = j - (taps - 1) / 2.0;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double hamming = 0.54 - 0.46 * Math.cos(2 * Math.PI * j / (taps - 1));
+            lowPass[j] = sinc * hamming;
+            sum += lowPass[j];
+        }
+        cosTaps = new double[taps];
+        sinTaps = new double[taps];
+        for (int j = 0; j < taps; j++) {
+            // Tap j meets the input (taps - 1) / 2 - j samples before the window's centre.
+            double phase = shift * ((taps - 1) / 2.0 - j);
+            cosTaps[j] = lowPass[j] / sum * Math.cos(phase);
+            sinTaps[j] = lowPass[j] / sum * Math.sin(phase);
+        }
+        rotationRe = Math.cos(omega * factor);
+        rotationIm = -Math.sin(omega * factor);
+
+        buffer = new double[lead + taps];
+        filled = lead;
+    }
+
+    /**
+     * Largest factor, down to a rate no lower than {@value #MIN_OUTPUT_RATE} Hz, that divides
+     * {@code sampleRate}, so the reduced rate is a whole number of hertz; 1 at rates too low to reduce.
+     */
+    public static int factorFor(int sampleRate) {
+        for (int factor = sampleRate / MIN_OUTPUT_RATE; factor > 1; factor--) {
+            if (sampleRate % factor == 0) {
+                return factor;
+            }
+        }
+        return 1;
+    }
+
+    /** A smoothing window of {@code window} input samples, counted at the reduced rate. */
+    public static int scaleWindow(int window, int factor) {
+        return Math.max(1, (int) Math.round((double) window / factor));
+    }
+
+    public int getFactor() {
+        return factor;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /** Most frequencies {@link #process} can produce from {@code length} inputs. */
+    public int maxOutput(int length) {
+        return length / factor + 1;
+    }
+
+    /**
+     * Demodulates {@code length} more samples of the stream into {@code out}, which needs room
+     * for {@link #maxOutput(int) maxOutput(length)}, and returns how many frequencies were written.
+     */
+    public int process(double[] in, int offset, int length, double[] out, int outOffset) {
+        if (buffer.length < filled + length) {
+            buffer = Arrays.copyOf(buffer, filled + length);
+        }
+        System.arraycopy(in, offset, buffer, filled, length);
+        filled += length;
+        consumed += length;
+
+        double scale = outputRate / (2 * Math.PI);
+        int written = 0;
+        int start = 0;
+        for (; start + taps <= filled; start += factor) {
+            double re = 0;
+            double im = 0;
+            for (int j = 0; j < taps; j++) {
+                double sample = buffer[start + j];
+                re += cosTaps[j] * sample;
+                im += sinTaps[j] * sample;
+            }
+            if (primed) {
+                double dotRe = re * previousRe + im * previousIm;
+                double dotIm = im * previousRe - re * previousIm;
+                double step = Math.atan2(dotIm * rotationRe + dotRe * rotationIm,
+                        dotRe * rotationRe - dotIm * rotationIm);
+                out[outOffset + written++] = CENTRE_FREQ + step * scale;
+            }
+            previousRe = re;
+            previousIm = im;
+            primed = true;
+        }
+        filled -= start;
+        System.arraycopy(buffer, start, buffer, 0, filled);
+        produced += written;
+        return written;
+    }
+
+    /** Most frequencies {@link #finish} can write. */
+    public int maxFinishOutput() {
+        return maxOutput(taps + factor);
+    }
+
+    /**
+     * Pads the stream with silence until there is a frequency for every input sample but the
+     * last, writing them to {@code out}, which needs room for {@link #maxFinishOutput()}, and
+     * returns how many.
+     */
+    public int finish(double[] out, int outOffset) {
+        long total = consumed < 2 ? 0 : (consumed - 2) / factor + 1;
+        long input = consumed;
+        int written = process(new double[taps + factor], 0, taps + factor, out, outOffset);
+        consumed = input;
+        written -= (int) (produced - total);
+        produced = total;
+        return written;
+    }
+
+    /** Demodulates a whole recording, a block at a time. */
+    public static double[] demodulate(double[] signal, int sampleRate, int factor) {
+        BasebandDemodulator demodulator = new BasebandDemodulator(sampleRate, factor);
+        double[] freq = new double[demodulator.maxOutput(signal.length) + demodulator.maxFinishOutput()];
+        int n = 0;
+        for (int i = 0; i < signal.length; i += BLOCK) {
+            n += demodulator.process(signal, i, Math.min(BLOCK, signal.length - i), freq, n);
+        }
+        n += demodulator.finish(freq, n);
+        return Arrays.copyOf(freq, n);
+    }
+
+    /** Single-precision version of {@link #demodulate(double[], int, int)}. */
+    public static float[] demodulate(float[] signal, int sampleRate, int factor) {
+        BasebandDemodulator demodulator = new BasebandDemodulator(sampleRate, factor);
+        double[] wide = new double[BLOCK];
+        double[] block = new double[Math.max(demodulator.maxOutput(BLOCK), demodulator.maxFinishOutput())];
+        float[] freq = new float[demodulator.maxOutput(signal.length) + demodulator.maxFinishOutput()];
+        int n = 0;
+        for (int i = 0; i < signal.length; i += BLOCK) {
+            int length = Math.min(BLOCK, signal.length - i);
+            for (int k = 0; k < length; k++) {
+                wide[k] = signal[i + k];
+            }
+            n = narrow(block, demodulator.process(wide, 0, length, block, 0), freq, n);
+        }
+        n = narrow(block, demodulator.finish(block, 0), freq, n);
+        return Arrays.copyOf(freq, n);
+    }
+
+    private static int narrow(double[] block, int count, float[] out, int offset) {
+        for (int k = 0; k < count; k++) {
+            out[offset + k] = (float) block[k];
+        }
+        return offset + count;
+    }
+}
@@ -0,0 +1,244 @@
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes every WAV file in a directory in parallel. Each worker thread owns its own
+ * {@link SstvDecoder}; images are written to the configured output directory as
+ * {@code <recording name>.<format>}. With mode detection on, a file whose first seconds hold
+ * no VIS header is skipped without being demodulated.
+ * <pre>
+ *   java Main --batch &lt;directory&gt; [--out dir] [--format png|jpg|bmp] [--threads N] [--streaming]
+ *                 [--filter boxcar|fir|biquad] [--window N] [--gray] [--no-vis] [--float]
+ *                 [--channel N|mix] [--rate Hz] [--baseband]
+ * </pre>
+ */
+public class BatchDecoder {
+    public interface Listener {
+        void fileDecoded(File input, File output, int completed, int total);
+
+        void fileFailed(File input, Exception error, int completed, int total);
+
+        default void fileSkipped(File input, int completed, int total) {
+        }
+    }
+
+    public static class Summary {
+        private final int decoded;
+        private final int failed;
+        private final int skipped;
+        private final double seconds;
+        private final double audioSeconds;
+
+        Summary(int decoded, int failed, int skipped, double seconds, double audioSeconds) {
+            this.decoded = decoded;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.seconds = seconds;
+            this.audioSeconds = audioSeconds;
+        }
+
+        public int getDecoded() {
+            return decoded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Decoded %d files (%d failed, %d not SSTV) in %.2f s: %.2f files/sec, %.1fx real time",
+                    decoded, failed, skipped, seconds, decoded / seconds, audioSeconds / seconds);
+        }
+    }
+
+    private final DecoderSettings settings;
+    private final int threads;
+    private volatile boolean cancelled;
+
+    public BatchDecoder(DecoderSettings settings, int threads) {
+        this.settings = settings.copy();
+        this.threads = Math.max(1, threads);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public static List<File> findRecordings(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".wav"));
+        List<File> recordings = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            recordings.addAll(Arrays.asList(files));
+        }
+        return recordings;
+    }
+
+    public Summary decodeAll(List<File> recordings, Listener listener) throws InterruptedException {
+        new File(settings.getOutputDirectory()).mkdirs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        ThreadLocal<SstvDecoder> decoders = ThreadLocal.withInitial(() -> new SstvDecoder(settings));
+        SstvDecoder.Listener decodeListener = new SstvDecoder.Listener() {
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+        };
+
+        AtomicInteger decoded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        double[] audioSeconds = new double[1];
+        int total = recordings.size();
+        long start = System.nanoTime();
+
+        try {
+            for (File recording : recordings) {
+                if (cancelled) {
+                    break;
+                }
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        SstvDecoder decoder = decoders.get();
+                        VisDecoder.Header header = null;
+                        if (settings.isAutoDetectMode()) {
+                            header = decoder.detectMode(recording);
+                            if (header == null) {
+                                int done = decoded.get() + failed.get() + skipped.incrementAndGet();
+                                listener.fileSkipped(recording, done, total);
+                                return;
+                            }
+                        }
+                        SstvDecoder.Result result = decoder.decode(recording, header, decodeListener);
+                        if (result == null) {
+                            return;
+                        }
+
+                        File output = decoder.outputFileFor(recording);
+                        ImageIO.write(result.getImage(), settings.getOutputFormat(), output);
+
+                        double duration = durationSeconds(recording);
+                        synchronized (audioSeconds) {
+                            audioSeconds[0] += duration;
+                        }
+                        int done = decoded.incrementAndGet() + failed.get() + skipped.get();
+                        listener.fileDecoded(recording, output, done, total);
+                    } catch (Exception e) {
+                        int done = decoded.get() + failed.incrementAndGet() + skipped.get();
+                        listener.fileFailed(recording, e, done, total);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        synchronized (audioSeconds) {
+            return new Summary(decoded.get(), failed.get(), skipped.get(), seconds, audioSeconds[0]);
+        }
+    }
+
+    private static double durationSeconds(File recording) {
+        try {
+            AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(recording);
+            return fileFormat.getFrameLength() / (double) fileFormat.getFormat().getFrameRate();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        DecoderSettings settings = new DecoderSettings();
+        int threads = Runtime.getRuntime().availableProcessors();
+        File directory = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--out".equals(arg) && i + 1 < args.length) {
+                settings.setOutputDirectory(args[++i]);
+            } else if ("--format".equals(arg) && i + 1 < args.length) {
+                settings.setOutputFormat(args[++i]);
+            } else if ("--threads".equals(arg) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--filter".equals(arg) && i + 1 < args.length) {
+                settings.setSmoothingFilter(LowPassFilter.Type.valueOf(args[++i].toUpperCase(Locale.ROOT)));
+            } else if ("--window".equals(arg) && i + 1 < args.length) {
+                settings.setSmoothingWindow(Integer.parseInt(args[++i]));
+            } else if ("--streaming".equals(arg)) {
+                settings.setStreamingDecode(true);
+            } else if ("--gray".equals(arg)) {
+                settings.setColorDecode(false);
+            } else if ("--no-vis".equals(arg)) {
+                settings.setAutoDetectMode(false);
+            } else if ("--float".equals(arg)) {
+                settings.setSinglePrecision(true);
+            } else if ("--channel".equals(arg) && i + 1 < args.length) {
+                String channel = args[++i];
+                settings.setChannel("mix".equalsIgnoreCase(channel) ? PcmConverter.DOWNMIX : Integer.parseInt(channel));
+            } else if ("--rate".equals(arg) && i + 1 < args.length) {
+                settings.setWorkingSampleRate(Integer.parseInt(args[++i]));
+            } else if ("--baseband".equals(arg)) {
+                settings.setDecimatingFrontEnd(true);
+            } else if (directory == null) {
+                directory = new File(arg);
+            }
+        }
+
+        if (directory == null || !directory.isDirectory()) {
+            System.err.println("Usage: Main --batch <directory> [--out dir] [--format png|jpg|bmp] [--threads N] [--streaming]"
+                    + " [--filter boxcar|fir|biquad] [--window N] [--gray] [--no-vis] [--float]"
+                    + " [--channel N|mix] [--rate Hz] [--baseband]");
+            return;
+        }
+
+        List<File> recordings = findRecordings(directory);
+        System.out.println("Decoding " + recordings.size() + " files on " + Math.max(1, threads) + " threads");
+
+        try {
+            Summary summary = new BatchDecoder(settings, threads).decodeAll(recordings, new Listener() {
+                @Override
+                public void fileDecoded(File input, File output, int completed, int total) {
+                    System.out.println("[" + completed + "/" + total + "] " + input.getName() + " -> " + output.getPath());
+                }
+
+                @Override
+                public void fileFailed(File input, Exception error, int completed, int total) {
+                    System.err.println("[" + completed + "/" + total + "] " + input.getName() + " failed: " + error.getMessage());
+                }
+
+                @Override
+                public void fileSkipped(File input, int completed, int total) {
+                    System.out.println("[" + completed + "/" + total + "] " + input.getName() + " skipped: no VIS header");
+                }
+            });
+            System.out.println(summary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch decoding interrupted");
+        }
+    }
+}
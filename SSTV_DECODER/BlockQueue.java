@@ -0,0 +1,54 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer queue of references with a fixed capacity. One
+ * thread offers, one thread polls; the slot written before the tail is published is visible
+ * to the reader once it sees the new tail, so items need no further synchronisation.
+ */
+public class BlockQueue<T> {
+    private final Object[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile boolean closed;
+
+    public BlockQueue(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        slots = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Adds {@code item} unless the queue is full. */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            return false;
+        }
+        slots[(int) (t & mask)] = item;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** Removes the oldest item, or returns {@code null} if there is none. */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        T item = (T) slots[index];
+        slots[index] = null;
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    /** Marks the end of the stream; the reader drains what is left and then sees {@link #isFinished()}. */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isFinished() {
+        return closed && head.get() == tail.get();
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Decoder configuration. {@link SstvDecoder} takes a private copy, so one settings object can
+ * be edited from the UI while decodes that started earlier keep their own values.
+ */
+public class DecoderSettings {
+    private int imageWidth = 800;
+    private int imageHeight = 320;
+    private double blackFreq = 1500.0;
+    private double whiteFreq = 2300.0;
+    private boolean colorDecode = true;
+    private boolean autoDetectMode = true;
+    private boolean streamingDecode = false;
+    private boolean singlePrecision = false;
+    private boolean decimatingFrontEnd = false;
+    private int channel = 0;
+    private int workingSampleRate = 0;
+    private int blockSize = 4096;
+    private LowPassFilter.Type smoothingFilter = LowPassFilter.Type.BOXCAR;
+    private int smoothingWindow = 5;
+    private String outputDirectory = ".";
+    private String outputFormat = "png";
+
+    public DecoderSettings copy() {
+        DecoderSettings copy = new DecoderSettings();
+        copy.imageWidth = imageWidth;
+        copy.imageHeight = imageHeight;
+        copy.blackFreq = blackFreq;
+        copy.whiteFreq = whiteFreq;
+        copy.colorDecode = colorDecode;
+        copy.autoDetectMode = autoDetectMode;
+        copy.streamingDecode = streamingDecode;
+        copy.singlePrecision = singlePrecision;
+        copy.decimatingFrontEnd = decimatingFrontEnd;
+        copy.channel = channel;
+        copy.workingSampleRate = workingSampleRate;
+        copy.blockSize = blockSize;
+        copy.smoothingFilter = smoothingFilter;
+        copy.smoothingWindow = smoothingWindow;
+        copy.outputDirectory = outputDirectory;
+        copy.outputFormat = outputFormat;
+        return copy;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public double getBlackFreq() {
+        return blackFreq;
+    }
+
+    public void setBlackFreq(double blackFreq) {
+        this.blackFreq = blackFreq;
+    }
+
+    public double getWhiteFreq() {
+        return whiteFreq;
+    }
+
+    public void setWhiteFreq(double whiteFreq) {
+        this.whiteFreq = whiteFreq;
+    }
+
+    /** Decode in colour at the native size of the mode instead of the grayscale image size above. */
+    public boolean isColorDecode() {
+        return colorDecode;
+    }
+
+    public void setColorDecode(boolean colorDecode) {
+        this.colorDecode = colorDecode;
+    }
+
+    /** Read the mode from the VIS header before decoding; batch decoding skips recordings without one. */
+    public boolean isAutoDetectMode() {
+        return autoDetectMode;
+    }
+
+    public void setAutoDetectMode(boolean autoDetectMode) {
+        this.autoDetectMode = autoDetectMode;
+    }
+
+    public boolean isStreamingDecode() {
+        return streamingDecode;
+    }
+
+    public void setStreamingDecode(boolean streamingDecode) {
+        this.streamingDecode = streamingDecode;
+    }
+
+    /**
+     * Whether the whole-file decode holds samples, the analytic signal and the frequency track
+     * in {@code float[]} rather than {@code double[]}, halving its heap use. Streaming decode
+     * works in fixed-size blocks and ignores this.
+     */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    public void setSinglePrecision(boolean singlePrecision) {
+        this.singlePrecision = singlePrecision;
+    }
+
+    /**
+     * Whether the audio is mixed down to baseband and decimated to about 11 kHz before
+     * demodulation, with the line timing taken at the reduced rate. See {@link BasebandDemodulator}.
+     */
+    public boolean isDecimatingFrontEnd() {
+        return decimatingFrontEnd;
+    }
+
+    public void setDecimatingFrontEnd(boolean decimatingFrontEnd) {
+        this.decimatingFrontEnd = decimatingFrontEnd;
+    }
+
+    /** Channel to decode, counting from 0, or {@link PcmConverter#DOWNMIX} to average them all. */
+    public int getChannel() {
+        return channel;
+    }
+
+    public void setChannel(int channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Rate the recording is resampled to before demodulation, or 0 to demodulate at the rate it
+     * was recorded at. Lowering a 96 kHz recording to 48 kHz halves the demodulation work.
+     */
+    public int getWorkingSampleRate() {
+        return workingSampleRate;
+    }
+
+    public void setWorkingSampleRate(int workingSampleRate) {
+        this.workingSampleRate = workingSampleRate;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public LowPassFilter.Type getSmoothingFilter() {
+        return smoothingFilter;
+    }
+
+    public void setSmoothingFilter(LowPassFilter.Type smoothingFilter) {
+        this.smoothingFilter = smoothingFilter;
+    }
+
+    public int getSmoothingWindow() {
+        return smoothingWindow;
+    }
+
+    public void setSmoothingWindow(int smoothingWindow) {
+        this.smoothingWindow = smoothingWindow;
+    }
+
+    public String getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory(String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    public void setOutputFormat(String outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * In-place radix-2 FFT on split real/imaginary arrays. Twiddle factors and the bit-reversal
+ * permutation are computed once per size, so transforms allocate nothing.
+ */
+public class Fft extends RadixTwoFft<double[]> {
+    private static final int CACHE_BLOCK = 1 << 13;
+
+    private final double[] cosTable;
+    private final double[] sinTable;
+
+    public Fft(int size) {
+        super(size, CACHE_BLOCK);
+        cosTable = new double[size];
+        sinTable = new double[size];
+        fillTwiddles();
+    }
+
+    /** cos(2*pi*k/size) for 0 <= k < size/2. */
+    public double cos(int k) {
+        return cosTable[getSize() / 2 + k];
+    }
+
+    /** sin(2*pi*k/size) for 0 <= k < size/2. */
+    public double sin(int k) {
+        return sinTable[getSize() / 2 + k];
+    }
+
+    @Override
+    void setTwiddle(int index, double cos, double sin) {
+        cosTable[index] = cos;
+        sinTable[index] = sin;
+    }
+
+    @Override
+    void swap(double[] re, double[] im, int i, int j) {
+        double t = re[i];
+        re[i] = re[j];
+        re[j] = t;
+        t = im[i];
+        im[i] = im[j];
+        im[j] = t;
+    }
+
+    @Override
+    void firstStages(double[] re, double[] im, int from, int to, int sign) {
+        if (to - from < 2) {
+            return;
+        }
+        for (int a = from; a < to; a += 2) {
+            double r = re[a + 1];
+            double i = im[a + 1];
+            re[a + 1] = re[a] - r;
+            im[a + 1] = im[a] - i;
+            re[a] += r;
+            im[a] += i;
+        }
+        if (to - from < 4) {
+            return;
+        }
+        for (int a = from; a < to; a += 4) {
+            double r0 = re[a + 2];
+            double i0 = im[a + 2];
+            re[a + 2] = re[a] - r0;
+            im[a + 2] = im[a] - i0;
+            re[a] += r0;
+            im[a] += i0;
+
+            double r1 = -sign * im[a + 3];
+            double i1 = sign * re[a + 3];
+            re[a + 3] = re[a + 1] - r1;
+            im[a + 3] = im[a + 1] - i1;
+            re[a + 1] += r1;
+            im[a + 1] += i1;
+        }
+    }
+
+    @Override
+    void butterflies(double[] re, double[] im, int from, int to, int half, int sign) {
+        for (int start = from; start < to; start += half << 1) {
+            for (int k = 0; k < half; k++) {
+                double wr = cosTable[half + k];
+                double wi = sign * sinTable[half + k];
+
+                int a = start + k;
+                int b = a + half;
+                double xr = re[b] * wr - im[b] * wi;
+                double xi = re[b] * wi + im[b] * wr;
+
+                re[b] = re[a] - xr;
+                im[b] = im[a] - xi;
+                re[a] += xr;
+                im[a] += xi;
+            }
+        }
+    }
+
+    @Override
+    void scale(double[] re, double[] im, int from, int to, double factor) {
+        for (int i = from; i < to; i++) {
+            re[i] *= factor;
+            im[i] *= factor;
+        }
+    }
+
+    @Override
+    void clear(double[] values, int from, int to) {
+        Arrays.fill(values, from, to, 0.0);
+    }
+
+    @Override
+    void pack(double[] signal, int length, double[] re, double[] im, int half) {
+        for (int k = 0; k < half; k++) {
+            int even = 2 * k;
+            re[k] = even < length ? signal[even] : 0.0;
+            im[k] = even + 1 < length ? signal[even + 1] : 0.0;
+        }
+    }
+
+    @Override
+    void split(double[] re, double[] im, int half) {
+        double z0r = re[0];
+        double z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = 0;
+        re[half] = z0r - z0i;
+        im[half] = 0;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            double a = re[k];
+            double b = im[k];
+            double c = re[j];
+            double d = im[j];
+
+            double evenRe = (a + c) * 0.5;
+            double evenIm = (b - d) * 0.5;
+            double oddRe = (b + d) * 0.5;
+            double oddIm = (c - a) * 0.5;
+
+            double wr = cos(k);
+            double wi = -sin(k);
+            re[k] = evenRe + wr * oddRe - wi * oddIm;
+            im[k] = evenIm + wr * oddIm + wi * oddRe;
+
+            // W^(n/2 - k) = -conj(W^k), and the even/odd parts of bin j are conjugates of bin k's.
+            re[j] = evenRe - wr * oddRe + wi * oddIm;
+            im[j] = -evenIm + wr * oddIm + wi * oddRe;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * Single-precision counterpart of {@link Fft} for the float decode path. Twiddles are rounded
+ * from the same double-precision angles and stored as {@code float}, so a transform of {@code n}
+ * points carries {@code 12n} bytes of tables where {@link Fft} carries {@code 20n}.
+ */
+public class FloatFft extends RadixTwoFft<float[]> {
+    /** Twice the points of Fft's block, which fit in the same cache. */
+    private static final int CACHE_BLOCK = 1 << 14;
+
+    private final float[] cosTable;
+    private final float[] sinTable;
+
+    public FloatFft(int size) {
+        super(size, CACHE_BLOCK);
+        cosTable = new float[size];
+        sinTable = new float[size];
+        fillTwiddles();
+    }
+
+    /** cos(2*pi*k/size) for 0 <= k < size/2. */
+    public float cos(int k) {
+        return cosTable[getSize() / 2 + k];
+    }
+
+    /** sin(2*pi*k/size) for 0 <= k < size/2. */
+    public float sin(int k) {
+        return sinTable[getSize() / 2 + k];
+    }
+
+    @Override
+    void setTwiddle(int index, double cos, double sin) {
+        cosTable[index] = (float) cos;
+        sinTable[index] = (float) sin;
+    }
+
+    @Override
+    void swap(float[] re, float[] im, int i, int j) {
+        float t = re[i];
+        re[i] = re[j];
+        re[j] = t;
+        t = im[i];
+        im[i] = im[j];
+        im[j] = t;
+    }
+
+    @Override
+    void firstStages(float[] re, float[] im, int from, int to, int sign) {
+        if (to - from < 2) {
+            return;
+        }
+        for (int a = from; a < to; a += 2) {
+            float r = re[a + 1];
+            float i = im[a + 1];
+            re[a + 1] = re[a] - r;
+            im[a + 1] = im[a] - i;
+            re[a] += r;
+            im[a] += i;
+        }
+        if (to - from < 4) {
+            return;
+        }
+        for (int a = from; a < to; a += 4) {
+            float r0 = re[a + 2];
+            float i0 = im[a + 2];
+            re[a + 2] = re[a] - r0;
+            im[a + 2] = im[a] - i0;
+            re[a] += r0;
+            im[a] += i0;
+
+            float r1 = -sign * im[a + 3];
+            float i1 = sign * re[a + 3];
+            re[a + 3] = re[a + 1] - r1;
+            im[a + 3] = im[a + 1] - i1;
+            re[a + 1] += r1;
+            im[a + 1] += i1;
+        }
+    }
+
+    @Override
+    void butterflies(float[] re, float[] im, int from, int to, int half, int sign) {
+        for (int start = from; start < to; start += half << 1) {
+            for (int k = 0; k < half; k++) {
+                float wr = cosTable[half + k];
+                float wi = sign * sinTable[half + k];
+
+                int a = start + k;
+                int b = a + half;
+                float xr = re[b] * wr - im[b] * wi;
+                float xi = re[b] * wi + im[b] * wr;
+
+                re[b] = re[a] - xr;
+                im[b] = im[a] - xi;
+                re[a] += xr;
+                im[a] += xi;
+            }
+        }
+    }
+
+    @Override
+    void scale(float[] re, float[] im, int from, int to, double factor) {
+        float f = (float) factor;
+        for (int i = from; i < to; i++) {
+            re[i] *= f;
+            im[i] *= f;
+        }
+    }
+
+    @Override
+    void clear(float[] values, int from, int to) {
+        Arrays.fill(values, from, to, 0.0f);
+    }
+
+    @Override
+    void pack(float[] signal, int length, float[] re, float[] im, int half) {
+        for (int k = 0; k < half; k++) {
+            int even = 2 * k;
+            re[k] = even < length ? signal[even] : 0.0f;
+            im[k] = even + 1 < length ? signal[even + 1] : 0.0f;
+        }
+    }
+
+    @Override
+    void split(float[] re, float[] im, int half) {
+        float z0r = re[0];
+        float z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = 0;
+        re[half] = z0r - z0i;
+        im[half] = 0;
+
+        for (int k = 1; k <= half / 2; k++) {
+            int j = half - k;
+            float a = re[k];
+            float b = im[k];
+            float c = re[j];
+            float d = im[j];
+
+            float evenRe = (a + c) * 0.5f;
+            float evenIm = (b - d) * 0.5f;
+            float oddRe = (b + d) * 0.5f;
+            float oddIm = (c - a) * 0.5f;
+
+            float wr = cos(k);
+            float wi = -sin(k);
+            re[k] = evenRe + wr * oddRe - wi * oddIm;
+            im[k] = evenIm + wr * oddIm + wi * oddRe;
+
+            re[j] = evenRe - wr * oddRe + wi * oddIm;
+            im[j] = -evenIm + wr * oddIm + wi * oddRe;
+        }
+    }
+}
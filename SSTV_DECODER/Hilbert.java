@@ -0,0 +1,36 @@
+/**
+ * FFT-based Hilbert transform for whole buffers, built on {@link Fft}, or {@link FloatFft} for
+ * single precision.
+ */
+public class Hilbert {
+    private Hilbert() {
+    }
+
+    /**
+     * Computes the analytic signal of {@code signal} into {@code re}/{@code im}, which must be
+     * at least {@code fft.getSize()} long. Input beyond the FFT size is ignored, shorter input
+     * is zero-padded.
+     */
+    public static void analyticSignal(double[] signal, Fft fft, double[] re, double[] im) {
+        analyticSignal(signal, signal.length, fft, re, im);
+    }
+
+    /** Single-precision version of {@link #analyticSignal(double[], Fft, double[], double[])}. */
+    public static void analyticSignal(float[] signal, FloatFft fft, float[] re, float[] im) {
+        analyticSignal(signal, signal.length, fft, re, im);
+    }
+
+    /** Keeps the positive half of the spectrum, halving the two bins it shares with the negative half. */
+    private static <A> void analyticSignal(A signal, int length, RadixTwoFft<A> fft, A re, A im) {
+        int size = fft.getSize();
+        int half = size / 2;
+        fft.realForward(signal, length, re, im);
+
+        fft.clear(re, half + 1, size);
+        fft.clear(im, half + 1, size);
+        fft.scale(re, im, 0, 1, 0.5);
+        fft.scale(re, im, half, half + 1, 0.5);
+
+        fft.inverse(re, im);
+    }
+}
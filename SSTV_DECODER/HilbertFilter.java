@@ -0,0 +1,62 @@
+import java.util.Arrays;
+
+/**
+ * Streaming FIR Hilbert transformer. Produces the analytic signal block by block,
+ * with the real part delayed by the filter's group delay so both outputs line up.
+ */
+public class HilbertFilter {
+    private final double[] taps;
+    private final double[] history;
+    private final int delay;
+    private final int firstOddTap;
+    private int pos;
+
+    public HilbertFilter(int numTaps) {
+        if (numTaps < 3 || numTaps % 2 == 0) {
+            throw new IllegalArgumentException("Hilbert filter needs an odd number of taps >= 3");
+        }
+        taps = new double[numTaps];
+        delay = (numTaps - 1) / 2;
+        firstOddTap = (delay % 2 == 0) ? 1 : 0;
+
+        for (int n = firstOddTap; n < numTaps; n += 2) {
+            int k = n - delay;
+            double window = 0.54 - 0.46 * Math.cos(2 * Math.PI * n / (numTaps - 1));
+            taps[n] = 2.0 / (Math.PI * k) * window;
+        }
+
+        history = new double[numTaps * 2];
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public void process(double[] in, int offset, int length, double[] re, double[] im) {
+        int numTaps = taps.length;
+
+        for (int i = 0; i < length; i++) {
+            double x = in[offset + i];
+            history[pos] = x;
+            history[pos + numTaps] = x;
+
+            int newest = pos + numTaps;
+            double acc = 0;
+            for (int n = firstOddTap; n < numTaps; n += 2) {
+                acc += taps[n] * history[newest - n];
+            }
+
+            re[i] = history[newest - delay];
+            im[i] = acc;
+
+            if (++pos == numTaps) {
+                pos = 0;
+            }
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(history, 0);
+        pos = 0;
+    }
+}
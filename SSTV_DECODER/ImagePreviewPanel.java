@@ -4,6 +4,9 @@ import java.awt.image.BufferedImage;
 
 
 public class ImagePreviewPanel extends JPanel {
+    /** Rows either side of the changed ones that are repainted too, for chroma shared between rows. */
+    private static final int ROW_MARGIN = 2;
+
     private BufferedImage image;
     private boolean showGrid;
     private int currentLine;
@@ -22,9 +25,19 @@ public class ImagePreviewPanel extends JPanel {
     }
     
     
+    /** Moves the line marker, repainting only the rows decoded since it was last moved. */
     public void setCurrentLine(int line) {
+        int previous = currentLine;
         this.currentLine = line;
-        repaint();
+        if (image == null) {
+            return;
+        }
+        double scale = imageScale();
+        int scaledWidth = (int) (image.getWidth() * scale);
+        int y = (getHeight() - (int) (image.getHeight() * scale)) / 2;
+        int top = y + (int) Math.floor((Math.min(previous, line) - ROW_MARGIN) * scale);
+        int bottom = y + (int) Math.ceil((Math.max(previous, line) + ROW_MARGIN) * scale);
+        repaint((getWidth() - scaledWidth) / 2, top, scaledWidth, bottom - top + 1);
     }
     
     
@@ -46,10 +59,7 @@ public class ImagePreviewPanel extends JPanel {
         }
         
         
-        double scale = Math.min(
-            (double) getWidth() / image.getWidth(),
-            (double) getHeight() / image.getHeight()
-        );
+        double scale = imageScale();
         
         int scaledWidth = (int) (image.getWidth() * scale);
         int scaledHeight = (int) (image.getHeight() * scale);
@@ -89,4 +99,12 @@ public class ImagePreviewPanel extends JPanel {
         
         g2d.dispose();
     }
+    
+    /** The image is scaled to fit the panel and drawn centred. */
+    private double imageScale() {
+        return Math.min(
+            (double) getWidth() / image.getWidth(),
+            (double) getHeight() / image.getHeight()
+        );
+    }
 }
@@ -0,0 +1,346 @@
+/**
+ * Turns a stream of smoothed instantaneous frequencies into image lines. Frequencies can be
+ * pushed in arbitrarily sized chunks; only the samples still needed by a pending line are kept.
+ * <p>
+ * Line starts are found by correlating the frequency track, hard-limited at the midpoint
+ * between the sync tone and black, against the mode's sync template: the sync pulse followed
+ * by the porch after it (9 ms and 3 ms in Robot36). The score peaks on the rising edge at the
+ * end of the pulse. Until the first sync the score is evaluated at every sample; after it the
+ * scanner predicts the next edge one line period on and only evaluates a small window around
+ * the prediction, falling back to a full search if several predicted pulses are missing.
+ */
+public class LineScanner {
+    public interface LineListener {
+        void lineDecoded(int line, int[] pixels, int count);
+    }
+
+    /** Turns the frequencies that follow one sync pulse into image data. */
+    public interface LineSampler {
+        /** Number of frequencies from the end of the sync pulse onwards that {@link #sampleLine} reads. */
+        int span();
+
+        /** Number of frequencies before the end of the sync pulse that {@link #sampleLine} reads. */
+        default int lead() {
+            return 0;
+        }
+
+        /**
+         * Samples one line. {@code freq[trigger]} is the first sample after the sync pulse, found
+         * at absolute sample {@code position} of the stream; only indices below {@code end} hold data.
+         */
+        void sampleLine(int line, double[] freq, int trigger, int end, long position);
+
+        /** Called once after the last line of the stream. */
+        default void finish() {
+        }
+    }
+
+    private static final double SYNC_THRESHOLD = 1350.0;
+    private static final int MAX_MISSES = 2;
+
+    private final LineSampler sampler;
+    private final int span;
+    private final int lead;
+    private final int syncSamples;
+    private final int porchSamples;
+    private final int linePeriod;
+    private final int minScore;
+    private final int lockWindow;
+    private final int tailGuard;
+
+    private double[] buffer;
+    private long bufferStart;
+    private int bufferLength;
+
+    private long[] pendingStarts = new long[8];
+    private int[] pendingLines = new int[8];
+    private int pendingHead;
+    private int pendingCount;
+
+    private int lineCount;
+
+    private boolean locked;
+    private long scanPos;
+    private long countsPos = -1;
+    private int lowBefore;
+    private int lowAfter;
+    private long bestPos;
+    private int bestScore;
+    private long lastSync;
+    private long predicted;
+    private int misses;
+
+    /**
+     * Grayscale scanner that shows everything after each sync pulse, one pixel per pixel time of
+     * the mode's first scan.
+     */
+    public LineScanner(SstvMode.Timing timing, int imageWidth, int imageHeight, double blackFreq, double whiteFreq,
+                       LineListener listener) {
+        this(new GraySampler(timing, imageWidth, imageHeight, blackFreq, whiteFreq, listener), timing);
+    }
+
+    /** Scanner that looks for the sync pulses and line period of {@code timing}. */
+    public LineScanner(LineSampler sampler, SstvMode.Timing timing) {
+        this.sampler = sampler;
+        this.span = sampler.span();
+        this.syncSamples = timing.getSyncLength();
+        this.porchSamples = timing.getPorchLength();
+        this.linePeriod = timing.getLinePeriod();
+        this.lead = Math.max(syncSamples, sampler.lead());
+        this.minScore = syncSamples * 3 / 4;
+        this.lockWindow = linePeriod * 3 / 100;
+        this.tailGuard = samplesFor(63.5f, timing.getSampleRate());
+        this.scanPos = syncSamples;
+        this.buffer = new double[(Math.max(span, linePeriod) + lead) * 2];
+    }
+
+    public void process(double[] freq, int offset, int length) {
+        append(freq, offset, length);
+
+        long available = bufferStart + bufferLength;
+        while (locked ? track(available) : search(available)) {
+        }
+
+        while (pendingCount > 0 && pendingStarts[pendingHead] + span < available) {
+            emitPending(pendingStarts[pendingHead] + span);
+        }
+    }
+
+    /**
+     * Flushes lines still waiting for samples once the stream has ended, applying the same
+     * end-of-signal limits as a whole-file decode.
+     */
+    public void finish() {
+        if (!locked && bestScore > 0) {
+            syncFound(bestPos);
+        }
+
+        long total = bufferStart + bufferLength;
+        while (pendingCount > 0) {
+            long start = pendingStarts[pendingHead];
+            if (start >= total - tailGuard) {
+                lineCount = pendingLines[pendingHead] - 1;
+                pendingCount = 0;
+                break;
+            }
+            emitPending(Math.min(start + span, total - 1));
+        }
+        sampler.finish();
+    }
+
+    /** Ignores any sync that ends before {@code position}, such as tones in a header already decoded. */
+    public void skipTo(long position) {
+        if (!locked && position > scanPos) {
+            scanPos = position;
+        }
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Scores every position up to the end of the data, stopping at the first sync found.
+     * Returns true if one was found and tracking should take over.
+     */
+    private boolean search(long available) {
+        while (scanPos + porchSamples <= available) {
+            int score = scoreAt(scanPos);
+            if (score >= minScore) {
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestPos = scanPos;
+                }
+            } else if (bestScore > 0) {
+                syncFound(bestPos);
+                return true;
+            }
+            scanPos++;
+        }
+        return false;
+    }
+
+    /**
+     * Scores the window around the predicted sync once all of it has arrived. Returns true if
+     * the window was handled and there may be another to look at.
+     */
+    private boolean track(long available) {
+        long from = predicted - lockWindow;
+        long to = predicted + lockWindow;
+        if (to + porchSamples > available) {
+            return false;
+        }
+
+        int best = -1;
+        long at = from;
+        for (long c = from; c <= to; c++) {
+            int score = scoreAt(c);
+            if (score > best) {
+                best = score;
+                at = c;
+            }
+        }
+
+        if (best >= minScore) {
+            syncFound(at);
+        } else if (++misses > MAX_MISSES) {
+            // Lost the signal: search again from just after the last pulse that was seen.
+            locked = false;
+            scanPos = lastSync + syncSamples;
+        } else {
+            predicted += linePeriod;
+        }
+        return true;
+    }
+
+    private void syncFound(long position) {
+        lineCount++;
+        enqueue(position, lineCount);
+        lastSync = position;
+        predicted = position + linePeriod;
+        misses = 0;
+        bestScore = 0;
+        locked = true;
+    }
+
+    /**
+     * Low samples in the sync-length window before {@code c} minus low samples in the porch
+     * window from {@code c}. Consecutive positions cost O(1); anything else recounts both windows.
+     */
+    private int scoreAt(long c) {
+        if (countsPos == c - 1) {
+            lowBefore += low(c - 1) - low(c - 1 - syncSamples);
+            lowAfter += low(c - 1 + porchSamples) - low(c - 1);
+        } else if (countsPos != c) {
+            lowBefore = 0;
+            for (long i = c - syncSamples; i < c; i++) {
+                lowBefore += low(i);
+            }
+            lowAfter = 0;
+            for (long i = c; i < c + porchSamples; i++) {
+                lowAfter += low(i);
+            }
+        }
+        countsPos = c;
+        return lowBefore - lowAfter;
+    }
+
+    private int low(long position) {
+        return position >= bufferStart && buffer[(int) (position - bufferStart)] < SYNC_THRESHOLD ? 1 : 0;
+    }
+
+    private static int samplesFor(float durationMs, int sampleRate) {
+        return (int) (durationMs / 1000 * sampleRate);
+    }
+
+    private void emitPending(long end) {
+        long start = pendingStarts[pendingHead];
+        int line = pendingLines[pendingHead];
+        pendingHead = (pendingHead + 1) % pendingStarts.length;
+        pendingCount--;
+
+        sampler.sampleLine(line, buffer, (int) (start - bufferStart), (int) (end - bufferStart), start);
+    }
+
+    private void enqueue(long start, int line) {
+        if (pendingCount == pendingStarts.length) {
+            long[] starts = new long[pendingStarts.length * 2];
+            int[] lines = new int[pendingLines.length * 2];
+            for (int k = 0; k < pendingCount; k++) {
+                int idx = (pendingHead + k) % pendingStarts.length;
+                starts[k] = pendingStarts[idx];
+                lines[k] = pendingLines[idx];
+            }
+            pendingStarts = starts;
+            pendingLines = lines;
+            pendingHead = 0;
+        }
+        int tail = (pendingHead + pendingCount) % pendingStarts.length;
+        pendingStarts[tail] = start;
+        pendingLines[tail] = line;
+        pendingCount++;
+    }
+
+    private void append(double[] freq, int offset, int length) {
+        // Keep what pending lines still need, and the sync window of where detection may resume.
+        long resume = (locked ? lastSync + syncSamples : Math.min(scanPos, countsPos)) - lead;
+        long keepFrom = pendingCount > 0 ? Math.min(pendingStarts[pendingHead] - sampler.lead(), resume) : resume;
+        int discard = (int) Math.min(bufferLength, Math.max(0, keepFrom - bufferStart));
+        if (discard > 0) {
+            System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+            bufferStart += discard;
+            bufferLength -= discard;
+        }
+
+        if (bufferLength + length > buffer.length) {
+            double[] grown = new double[Math.max(buffer.length * 2, bufferLength + length)];
+            System.arraycopy(buffer, 0, grown, 0, bufferLength);
+            buffer = grown;
+        }
+        System.arraycopy(freq, offset, buffer, bufferLength, length);
+        bufferLength += length;
+    }
+
+    /**
+     * One pixel per pixel time of the mode's first scan, from the end of the sync pulse to the
+     * start of the next one. The sample offsets of the pixels are worked out once.
+     */
+    private static final class GraySampler implements LineSampler {
+        private final int imageHeight;
+        private final double blackFreq;
+        private final double whiteFreq;
+        private final LineListener listener;
+        private final int[] offsets;
+        private final int[] pixels;
+
+        GraySampler(SstvMode.Timing timing, int imageWidth, int imageHeight, double blackFreq, double whiteFreq,
+                    LineListener listener) {
+            this.imageHeight = imageHeight;
+            this.blackFreq = blackFreq;
+            this.whiteFreq = whiteFreq;
+            this.listener = listener;
+
+            SstvMode mode = timing.getMode();
+            int scan = 0;
+            while (!mode.getSegment(0, scan).isScan()) {
+                scan++;
+            }
+            double pixelSamples = (double) timing.getLength(0, scan) / mode.getSegment(0, scan).getPixels();
+            int lineSamples = timing.getLinePeriod() - timing.getSyncLength();
+            int count = Math.min(imageWidth, (int) (lineSamples / pixelSamples));
+            this.offsets = new int[count];
+            for (int x = 0; x < count; x++) {
+                offsets[x] = (int) ((x + 1) * pixelSamples) - 1;
+            }
+            this.pixels = new int[count];
+        }
+
+        @Override
+        public int span() {
+            return offsets.length > 0 ? offsets[offsets.length - 1] + 1 : 0;
+        }
+
+        @Override
+        public void sampleLine(int line, double[] freq, int trigger, int end, long position) {
+            if (line >= imageHeight) {
+                return;
+            }
+
+            double range = whiteFreq - blackFreq;
+            int count = 0;
+            while (count < offsets.length && trigger + offsets[count] < end) {
+                double f = freq[trigger + offsets[count]];
+                int pixelValue;
+                if (f < blackFreq) {
+                    pixelValue = 0;
+                } else if (f > whiteFreq) {
+                    pixelValue = 255;
+                } else {
+                    pixelValue = (int) (((f - blackFreq) / range) * 255.0);
+                }
+                pixels[count++] = pixelValue;
+            }
+            listener.lineDecoded(line, pixels, count);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes SSTV in real time from a live audio line. A capture thread fills an
+ * {@link AudioRingBuffer}; a decode thread drains it in small blocks through the streaming
+ * demodulator so each line is painted shortly after its last sample arrives.
+ * <p>
+ * The same pipeline can replay a WAV file at real-time pace, which makes it testable headless.
+ * Demodulation and line timing run at the rate of whichever source was started.
+ */
+public class LiveDecoder {
+    public interface Listener extends LineScanner.LineListener {
+        void imageStarted(int imageNumber);
+
+        void imageCompleted(int imageNumber, int lines);
+
+        void stopped(Exception error);
+    }
+
+    public static final int CAPTURE_SAMPLE_RATE = 44100;
+    private static final int CAPTURE_BLOCK = 512;
+    private static final int DECODE_BLOCK = 1024;
+    private static final int RING_SECONDS = 2;
+    private static final int IDLE_PARK_NANOS = 2_000_000;
+    private static final double IMAGE_TIMEOUT_SECONDS = 5.0;
+
+    private final int imageWidth;
+    private final int imageHeight;
+    private final double blackFreq;
+    private final double whiteFreq;
+    private final LowPassFilter.Type smoothingFilter;
+    private final int smoothingWindow;
+    private final int channel;
+    private final Listener listener;
+    private AudioRingBuffer ring;
+    private int sampleRate = CAPTURE_SAMPLE_RATE;
+
+    private Thread captureThread;
+    private Thread decodeThread;
+    private volatile boolean running;
+    private volatile IOException failure;
+
+    public LiveDecoder(int imageWidth, int imageHeight, double blackFreq, double whiteFreq,
+                       LowPassFilter.Type smoothingFilter, int smoothingWindow, int channel, Listener listener) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.blackFreq = blackFreq;
+        this.whiteFreq = whiteFreq;
+        this.smoothingFilter = smoothingFilter;
+        this.smoothingWindow = smoothingWindow;
+        this.channel = channel;
+        this.listener = listener;
+        this.ring = new AudioRingBuffer(CAPTURE_SAMPLE_RATE * RING_SECONDS);
+    }
+
+    public static AudioFormat captureFormat() {
+        return new AudioFormat(CAPTURE_SAMPLE_RATE, 16, 1, true, false);
+    }
+
+    /**
+     * Starts decoding from the default capture device. The device is opened in mono, so the
+     * channel setting only applies to lines that deliver more than one channel.
+     */
+    public void startCapture() throws LineUnavailableException {
+        AudioFormat format = captureFormat();
+        TargetDataLine line = AudioSystem.getTargetDataLine(format);
+        line.open(format, CAPTURE_BLOCK * format.getFrameSize() * 4);
+        startCapture(line);
+    }
+
+    public void startCapture(TargetDataLine line) {
+        useSampleRate(line.getFormat().getSampleRate());
+        running = true;
+        line.start();
+        captureThread = new Thread(() -> {
+            try {
+                pump(new AudioInputStream(line), false, line.getFormat().getChannels() == 1 ? 0 : channel);
+            } finally {
+                line.stop();
+                line.close();
+            }
+        }, "sstv-live-capture");
+        startThreads();
+    }
+
+    /** Feeds a recording through the live pipeline at real-time pace. */
+    public void startReplay(File wavFile) throws IOException {
+        AudioInputStream in;
+        try {
+            in = AudioSystem.getAudioInputStream(wavFile);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported audio file: " + wavFile.getName(), e);
+        }
+        float rate = in.getFormat().getSampleRate();
+        if (!(rate > 0)) {
+            in.close();
+            throw new IOException("No sample rate in " + wavFile.getName());
+        }
+        useSampleRate(rate);
+        running = true;
+        captureThread = new Thread(() -> {
+            try (AudioInputStream stream = in) {
+                pump(stream, true, channel);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }, "sstv-live-replay");
+        startThreads();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public void join() throws InterruptedException {
+        if (captureThread != null) {
+            captureThread.join();
+        }
+        if (decodeThread != null) {
+            decodeThread.join();
+        }
+    }
+
+    public long getDroppedSamples() {
+        return ring.getDroppedSamples();
+    }
+
+    /** Demodulates at {@code rate}, with a ring holding {@link #RING_SECONDS} of it. */
+    private void useSampleRate(float rate) {
+        sampleRate = Math.round(rate);
+        if (ring.getCapacity() < sampleRate * RING_SECONDS) {
+            ring = new AudioRingBuffer(sampleRate * RING_SECONDS);
+        }
+    }
+
+    private void startThreads() {
+        decodeThread = new Thread(this::decodeLoop, "sstv-live-decode");
+        decodeThread.setDaemon(true);
+        captureThread.setDaemon(true);
+        decodeThread.start();
+        captureThread.start();
+    }
+
+    /** Converts {@code in} block by block to {@code channel}, or the mix of all of them, into the ring. */
+    private void pump(AudioInputStream in, boolean pace, int channel) {
+        AudioFormat format = in.getFormat();
+        int frameSize = format.getFrameSize();
+        byte[] bytes = new byte[CAPTURE_BLOCK * frameSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        double[] mono = new double[CAPTURE_BLOCK];
+
+        long startNanos = System.nanoTime();
+        long framesWritten = 0;
+        try {
+            PcmConverter converter;
+            try {
+                converter = new PcmConverter(format);
+            } catch (UnsupportedAudioFileException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            if (channel < PcmConverter.DOWNMIX || channel >= converter.getChannels()) {
+                throw new IOException("No channel " + channel + " in a " + converter.getChannels() + "-channel source");
+            }
+
+            int filled = 0;
+            int n;
+            while (running && (n = in.read(bytes, filled, bytes.length - filled)) != -1) {
+                filled += n;
+                int frames = filled / frameSize;
+                if (frames == 0) {
+                    continue;
+                }
+
+                int usedBytes = frames * frameSize;
+                converter.convert(buffer, 0, frames, channel, mono, 0);
+                ring.write(mono, 0, frames);
+
+                System.arraycopy(bytes, usedBytes, bytes, 0, filled - usedBytes);
+                filled -= usedBytes;
+                framesWritten += frames;
+
+                if (pace) {
+                    long due = startNanos + (long) (framesWritten * 1e9 / format.getSampleRate());
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            running = false;
+        } finally {
+            ring.close();
+        }
+    }
+
+    private void decodeLoop() {
+        double[] block = new double[DECODE_BLOCK];
+        double[] freq = new double[DECODE_BLOCK];
+        StreamingDemodulator demodulator = new StreamingDemodulator(sampleRate, smoothingFilter, smoothingWindow);
+        SstvMode.Timing timing = SstvMode.ROBOT_36.timing(sampleRate);
+
+        int imageNumber = 0;
+        LineScanner scanner = null;
+        int lastLineCount = 0;
+        long samplesSinceLine = 0;
+        long timeoutSamples = (long) (IMAGE_TIMEOUT_SECONDS * sampleRate);
+        Exception error = null;
+
+        try {
+            while (!ring.isFinished()) {
+                int n = ring.read(block, 0, block.length);
+                if (n == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                if (scanner == null) {
+                    imageNumber++;
+                    listener.imageStarted(imageNumber);
+                    scanner = new LineScanner(timing, imageWidth, imageHeight, blackFreq, whiteFreq, listener);
+                    lastLineCount = 0;
+                    samplesSinceLine = 0;
+                }
+
+                int produced = demodulator.process(block, n, freq);
+                scanner.process(freq, 0, produced);
+
+                int lines = scanner.getLineCount();
+                if (lines != lastLineCount) {
+                    lastLineCount = lines;
+                    samplesSinceLine = 0;
+                } else {
+                    samplesSinceLine += produced;
+                }
+
+                boolean full = lines >= imageHeight;
+                boolean idle = lines > 0 && samplesSinceLine > timeoutSamples;
+                if (full || idle) {
+                    scanner.finish();
+                    listener.imageCompleted(imageNumber, Math.min(scanner.getLineCount(), imageHeight));
+                    scanner = null;
+                }
+            }
+
+            if (scanner != null) {
+                scanner.finish();
+                if (scanner.getLineCount() > 0) {
+                    listener.imageCompleted(imageNumber, Math.min(scanner.getLineCount(), imageHeight));
+                }
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            running = false;
+            // The capture side closes the ring before the loop above can end, so its failure is visible here.
+            listener.stopped(error != null ? error : failure);
+        }
+    }
+}
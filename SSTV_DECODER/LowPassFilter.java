@@ -0,0 +1,449 @@
+import java.util.Arrays;
+
+/**
+ * Low-pass stage for the demodulated frequency track. The window size sets the bandwidth for
+ * every type: the boxcar averages {@code window} samples, the FIR is a Hamming-windowed sinc
+ * with {@code window} taps, and the biquad is a Butterworth section cut off at
+ * {@code 1/window} cycles per sample, where the boxcar response has its first null.
+ * <p>
+ * {@link #apply} filters a whole array with zero phase shift, in place if {@code in == out};
+ * its {@code float[]} overload keeps sums and filter state in double and rounds only on store.
+ * An instance filters a stream causally, one sample at a time, carrying its state across
+ * calls. The boxcar keeps a running sum and costs the same for any window; the biquad is
+ * also O(n); the FIR costs {@code window} multiplies per sample.
+ */
+public class LowPassFilter {
+    public enum Type { BOXCAR, FIR, BIQUAD }
+
+    private static final int RESYNC_BLOCK = 4096;
+
+    private final Type type;
+    private final int window;
+    private final double[] taps;
+    private final double[] history;
+    private final Biquad biquad;
+    private int count;
+    private int pos;
+    private double sum;
+
+    public LowPassFilter(Type type, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 sample: " + window);
+        }
+        this.type = type;
+        this.window = type == Type.FIR ? window | 1 : window;
+        this.taps = type == Type.FIR ? firTaps(this.window) : null;
+        this.history = type == Type.BIQUAD ? null : new double[this.window];
+        this.biquad = type == Type.BIQUAD ? new Biquad(window) : null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Number of samples the streaming output lags behind the input. */
+    public int getDelay() {
+        switch (type) {
+            case FIR:
+                return window / 2;
+            case BIQUAD:
+                return (int) Math.round(Math.sqrt(2) * window / (2 * Math.PI));
+            default:
+                return window / 2;
+        }
+    }
+
+    public void reset() {
+        count = 0;
+        pos = 0;
+        sum = 0;
+        if (biquad != null) {
+            biquad.primed = false;
+        }
+    }
+
+    /** Filters the next sample of the stream. */
+    public double next(double value) {
+        switch (type) {
+            case FIR:
+                return nextFir(value);
+            case BIQUAD:
+                return biquad.next(value);
+            default:
+                return nextBoxcar(value);
+        }
+    }
+
+    /** Filters {@code length} samples of the stream; {@code in} and {@code out} may be the same array. */
+    public void process(double[] in, int offset, int length, double[] out, int outOffset) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = next(in[offset + i]);
+        }
+    }
+
+    /** Mean of the last {@code window} samples, or of all samples so far at the start. */
+    private double nextBoxcar(double value) {
+        if (count == window) {
+            sum -= history[pos];
+        } else {
+            count++;
+        }
+        history[pos] = value;
+        sum += value;
+        if (++pos == window) {
+            pos = 0;
+            // Re-add the window once per cycle so rounding in the running sum cannot build up.
+            sum = sumOf(history, count);
+        }
+        return sum / count;
+    }
+
+    private double nextFir(double value) {
+        if (count == 0) {
+            Arrays.fill(history, value);
+            count = window;
+        }
+        history[pos] = value;
+        if (++pos == window) {
+            pos = 0;
+        }
+        double acc = 0;
+        int h = pos;
+        for (int k = 0; k < window; k++) {
+            acc += taps[k] * history[h];
+            if (++h == window) {
+                h = 0;
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Zero-phase low-pass of {@code in} into {@code out}, which may be the same array. The
+     * boxcar and FIR are centred on each sample and renormalised where they overhang the ends;
+     * the biquad runs forwards and then backwards.
+     */
+    public static void apply(Type type, int window, double[] in, double[] out) {
+        apply(type, window, new DoubleTrack(in, out));
+    }
+
+    /** Single-precision version of {@link #apply(Type, int, double[], double[])}. */
+    public static void apply(Type type, int window, float[] in, float[] out) {
+        apply(type, window, new FloatTrack(in, out));
+    }
+
+    private static void apply(Type type, int window, Track track) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1 sample: " + window);
+        }
+        switch (type) {
+            case FIR:
+                centred(track, firTaps(window | 1));
+                break;
+            case BIQUAD:
+                biquadForwardBackward(track, window);
+                break;
+            default:
+                boxcar(track, window);
+                break;
+        }
+    }
+
+    /**
+     * Centred moving average spanning {@code window / 2} samples either side. A small ring holds
+     * the inputs still needed after they are overwritten, so {@code out} may alias {@code in}.
+     * Away from the ends the window is always full and each output costs one add and one
+     * subtract; the sum is re-added from the ring after every block so rounding cannot build up.
+     */
+    private static void boxcar(Track track, int window) {
+        int n = track.length();
+        int half = window / 2;
+        int span = 2 * half + 1;
+        // One slot more than the window: the newest input lands before the oldest is dropped.
+        int size = span + 1;
+        int block = Math.max(RESYNC_BLOCK, 4 * span);
+        double[] ring = new double[size];
+
+        double sum = 0;
+        int first = 0;
+        int last = -1;
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; ) {
+            int want = Math.min(n - 1, i + half);
+            while (last < want) {
+                last++;
+                double value = track.in(last);
+                ring[head] = value;
+                sum += value;
+                if (++head == size) {
+                    head = 0;
+                }
+            }
+            while (first < i - half) {
+                sum -= ring[tail];
+                first++;
+                if (++tail == size) {
+                    tail = 0;
+                }
+            }
+
+            int count = last - first + 1;
+            if (count < span || i + half + 1 >= n) {
+                track.out(i++, sum / count);
+                continue;
+            }
+
+            int end = Math.min(n - half - 1, i + block);
+            track.slide(ring, head, tail, sum, i, end, half);
+            head = (head + end - i) % size;
+            tail = (tail + end - i) % size;
+            i = end;
+            first = i - half;
+            last = i + half;
+            sum = 0;
+            for (int k = 0, r = tail; k < span; k++) {
+                sum += ring[r];
+                if (++r == size) {
+                    r = 0;
+                }
+            }
+        }
+    }
+
+    /** Centred FIR, renormalised by the taps that fall inside the array at each end. */
+    private static void centred(Track track, double[] taps) {
+        int n = track.length();
+        int half = taps.length / 2;
+        int span = taps.length;
+        double[] ring = new double[span];
+
+        for (int j = 0; j < n + half; j++) {
+            if (j < n) {
+                ring[j % span] = track.in(j);
+            }
+            int i = j - half;
+            if (i < 0) {
+                continue;
+            }
+            int lo = Math.max(0, i - half);
+            int hi = Math.min(n - 1, i + half);
+            double acc = 0;
+            double gain = 0;
+            for (int k = lo; k <= hi; k++) {
+                double tap = taps[k - i + half];
+                acc += tap * ring[k % span];
+                gain += tap;
+            }
+            track.out(i, lo == i - half && hi == i + half ? acc : acc / gain);
+        }
+    }
+
+    private static void biquadForwardBackward(Track track, int window) {
+        int n = track.length();
+        Biquad forward = new Biquad(window);
+        for (int i = 0; i < n; i++) {
+            track.out(i, forward.next(track.in(i)));
+        }
+        Biquad backward = new Biquad(window);
+        for (int i = n - 1; i >= 0; i--) {
+            track.out(i, backward.next(track.out(i)));
+        }
+    }
+
+    /** Hamming-windowed sinc with unity DC gain and cutoff at {@code 1/length} cycles per sample. */
+    private static double[] firTaps(int length) {
+        double[] taps = new double[length];
+        if (length == 1) {
+            taps[0] = 1;
+            return taps;
+        }
+        double cutoff = 1.0 / length;
+        int half = length / 2;
+        double total = 0;
+        for (int k = 0; k < length; k++) {
+            int m = k - half;
+            double sinc = m == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * m) / (Math.PI * m);
+            double hamming = 0.54 - 0.46 * Math.cos(2 * Math.PI * k / (length - 1));
+            taps[k] = sinc * hamming;
+            total += taps[k];
+        }
+        for (int k = 0; k < length; k++) {
+            taps[k] /= total;
+        }
+        return taps;
+    }
+
+    private static double sumOf(double[] values, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Input and output arrays of one {@link #apply} call, read and written as doubles so the
+     * filters are written once; only the boxcar's steady-state loop is kept per element type.
+     */
+    private abstract static class Track {
+        abstract int length();
+
+        abstract double in(int i);
+
+        abstract double out(int i);
+
+        abstract void out(int i, double value);
+
+        /**
+         * Outputs {@code from} to {@code to} of a boxcar whose window is full: each output is
+         * {@code sum / span}, then the next input enters at {@code head} and the oldest, at
+         * {@code tail}, leaves.
+         */
+        abstract void slide(double[] ring, int head, int tail, double sum, int from, int to, int half);
+    }
+
+    private static final class DoubleTrack extends Track {
+        private final double[] in;
+        private final double[] out;
+
+        DoubleTrack(double[] in, double[] out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        int length() {
+            return in.length;
+        }
+
+        @Override
+        double in(int i) {
+            return in[i];
+        }
+
+        @Override
+        double out(int i) {
+            return out[i];
+        }
+
+        @Override
+        void out(int i, double value) {
+            out[i] = value;
+        }
+
+        @Override
+        void slide(double[] ring, int head, int tail, double sum, int from, int to, int half) {
+            int size = ring.length;
+            int span = size - 1;
+            for (int i = from; i < to; i++) {
+                double incoming = in[i + half + 1];
+                double value = sum / span;
+                sum += incoming - ring[tail];
+                ring[head] = incoming;
+                out[i] = value;
+                if (++head == size) {
+                    head = 0;
+                }
+                if (++tail == size) {
+                    tail = 0;
+                }
+            }
+        }
+    }
+
+    private static final class FloatTrack extends Track {
+        private final float[] in;
+        private final float[] out;
+
+        FloatTrack(float[] in, float[] out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        int length() {
+            return in.length;
+        }
+
+        @Override
+        double in(int i) {
+            return in[i];
+        }
+
+        @Override
+        double out(int i) {
+            return out[i];
+        }
+
+        @Override
+        void out(int i, double value) {
+            out[i] = (float) value;
+        }
+
+        @Override
+        void slide(double[] ring, int head, int tail, double sum, int from, int to, int half) {
+            int size = ring.length;
+            int span = size - 1;
+            for (int i = from; i < to; i++) {
+                double incoming = in[i + half + 1];
+                double value = sum / span;
+                sum += incoming - ring[tail];
+                ring[head] = incoming;
+                out[i] = (float) value;
+                if (++head == size) {
+                    head = 0;
+                }
+                if (++tail == size) {
+                    tail = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Second-order Butterworth low-pass in transposed direct form II. It starts in the steady
+     * state for its first input, so a signal that begins well above zero does not ramp up
+     * through the sync band.
+     */
+    private static final class Biquad {
+        private final double b0;
+        private final double b1;
+        private final double b2;
+        private final double a1;
+        private final double a2;
+        private double z1;
+        private double z2;
+        private boolean primed;
+
+        Biquad(int window) {
+            if (window < 3) {
+                // At or above Nyquist there is nothing to remove.
+                b0 = 1;
+                b1 = b2 = a1 = a2 = 0;
+                return;
+            }
+            double w0 = 2 * Math.PI / window;
+            double alpha = Math.sin(w0) / Math.sqrt(2);
+            double cos = Math.cos(w0);
+            double a0 = 1 + alpha;
+            b0 = (1 - cos) / 2 / a0;
+            b1 = (1 - cos) / a0;
+            b2 = b0;
+            a1 = -2 * cos / a0;
+            a2 = (1 - alpha) / a0;
+        }
+
+        double next(double x) {
+            if (!primed) {
+                z2 = (b2 - a2) * x;
+                z1 = (b1 - a1) * x + z2;
+                primed = true;
+            }
+            double y = b0 * x + z1;
+            z1 = b1 * x - a1 * y + z2;
+            z2 = b2 * x - a2 * y;
+            return y;
+        }
+    }
+}
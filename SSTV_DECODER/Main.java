@@ -7,19 +7,16 @@ import java.awt.image.BufferedImage;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class Main {
-    private static final int SAMPLE_RATE = 44100; 
-    private static int IMAGE_WIDTH = 800;
-    private static int IMAGE_HEIGHT = 320;
-    private static double BLACK_FREQ = 1500.0; 
-    private static double WHITE_FREQ = 2300.0; 
-    private static double FREQ_RANGE = WHITE_FREQ - BLACK_FREQ;
+    private static final DecoderSettings settings = new DecoderSettings();
 
     private static JFrame frame;
     private static JTextArea logArea;
@@ -36,8 +33,18 @@ public class Main {
     private static ImagePreviewPanel previewPanel;
     private static SettingsDialog settingsDialog;
     private static WaveformPanel waveformPanel;
+    private static ProgressChannel progressChannel;
+    private static LiveDecoder liveDecoder;
 
     public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            BatchDecoder.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--live-replay")) {
+            runLiveReplay(new File(args[1]), new File(args.length >= 3 ? args[2] : "."));
+            return;
+        }
         createAndShowGUI();
     }
 
@@ -73,6 +80,12 @@ public class Main {
         waveformPanel = new WaveformPanel();
         waveformPanel.setPreferredSize(new Dimension(900, 100));
 
+        progressChannel = new ProgressChannel(30, snapshot -> {
+            waveformPanel.setProgress(snapshot.getPosition());
+            previewPanel.setCurrentLine(snapshot.getRowsDecoded());
+            statusBar.updateProgress(snapshot.getProgress());
+        });
+
         
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, logScrollPane, previewPanel);
         splitPane.setResizeWeight(0.5);
@@ -80,8 +93,10 @@ public class Main {
         
         contentPanel.add(toolBar, BorderLayout.NORTH);
         contentPanel.add(splitPane, BorderLayout.CENTER);
-        contentPanel.add(waveformPanel, BorderLayout.SOUTH);
-        contentPanel.add(statusBar, BorderLayout.SOUTH);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(waveformPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+        contentPanel.add(southPanel, BorderLayout.SOUTH);
 
         
         layeredPane.add(contentPanel, JLayeredPane.DEFAULT_LAYER);
@@ -99,6 +114,7 @@ public class Main {
         toolBar.setViewAction(e -> viewOutput());
         toolBar.setSettingsAction(e -> openSettings());
         toolBar.setSaveAsAction(e -> saveImageAs());
+        toolBar.setLiveAction(e -> toggleLive());
 
         
         new FileDropHandler(contentPanel, files -> handleDroppedFiles(files));
@@ -131,11 +147,22 @@ public class Main {
         settingsDialog.setVisible(true);
 
         if (settingsDialog.isSettingsChanged()) {
-            IMAGE_WIDTH = settingsDialog.getImageWidth();
-            IMAGE_HEIGHT = settingsDialog.getImageHeight();
-            BLACK_FREQ = settingsDialog.getBlackFreq();
-            WHITE_FREQ = settingsDialog.getWhiteFreq();
-            FREQ_RANGE = WHITE_FREQ - BLACK_FREQ;
+            settings.setImageWidth(settingsDialog.getImageWidth());
+            settings.setImageHeight(settingsDialog.getImageHeight());
+            settings.setBlackFreq(settingsDialog.getBlackFreq());
+            settings.setWhiteFreq(settingsDialog.getWhiteFreq());
+            settings.setColorDecode(settingsDialog.isColorDecode());
+            settings.setStreamingDecode(settingsDialog.isStreamingDecode());
+            settings.setBlockSize(settingsDialog.getBlockSize());
+            settings.setSmoothingFilter(settingsDialog.getSmoothingFilter());
+            settings.setSmoothingWindow(settingsDialog.getSmoothingWindow());
+            settings.setAutoDetectMode(settingsDialog.isAutoDetectMode());
+            settings.setSinglePrecision(settingsDialog.isSinglePrecision());
+            settings.setChannel(settingsDialog.getChannel());
+            settings.setWorkingSampleRate(settingsDialog.getWorkingSampleRate());
+            settings.setDecimatingFrontEnd(settingsDialog.isDecimatingFrontEnd());
+            settings.setOutputDirectory(settingsDialog.getOutputDirectory());
+            settings.setOutputFormat(settingsDialog.getOutputFormat());
 
             previewPanel.setShowGrid(settingsDialog.isShowGrid());
 
@@ -228,6 +255,7 @@ public class Main {
             
 
             SwingUtilities.invokeLater(() -> {
+                progressChannel.stop();
                 loadingPanel.setVisible(false);
                 toolBar.setFileSelected(true);
                 statusBar.stopTimer();
@@ -247,150 +275,77 @@ public class Main {
                     loadingPanel.setVisible(true);
                     statusBar.reset();
                     statusBar.startTimer();
+                    progressChannel.start();
                     statusBar.setStatus("Decoding " + selectedFile.getName());
                 });
 
                 logArea.append("Starting SSTV audio decoding...\n");
 
-                
-                final BufferedImage[] imgRef = new BufferedImage[1];
-                imgRef[0] = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
-
-                
-                SwingUtilities.invokeLater(() -> {
-                    previewPanel.setImage(imgRef[0]);
-                });
-
-                
-                AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(selectedFile);
-                AudioFormat format = audioInputStream.getFormat();
-
-                
-                int numBytes = (int) audioInputStream.getFrameLength() * format.getFrameSize();
-                byte[] audioBytes = new byte[numBytes];
-                audioInputStream.read(audioBytes); 
-
-                
-                double[] audio = bytesToSamples(audioBytes, format);
-
-                waveformPanel.setWaveform(audio);
-
-               
-                if (format.getChannels() > 1) {
-                    logArea.append("Converting stereo to mono...\n");
-                    audio = stereoToMono(audio);
-                    waveformPanel.setWaveform(audio);
-                }
-
-                
-                double[] instantaneousFrequency = calculateInstantaneousFrequency(audio, SAMPLE_RATE);
-
-                
-                double[] smoothedFrequency = smoothArray(instantaneousFrequency, 5);
-
-                
-                int lineCount = 0;
-                int sampleBuffer = 0;
-
-                
-                for (int i = 0; i < smoothedFrequency.length - 2800; i++) {
-                    if (cancelDecoding) {
-                        logArea.append("Decoding cancelled by user.\n");
-                        return;
+                SstvDecoder decoder = new SstvDecoder(settings);
+                SstvDecoder.Result result = decoder.decode(selectedFile, new SstvDecoder.Listener() {
+                    @Override
+                    public void imageStarted(BufferedImage image) {
+                        SwingUtilities.invokeLater(() -> previewPanel.setImage(image));
                     }
 
-                    
-                    if (smoothedFrequency[i] < 1300) {
-                        sampleBuffer++;
+                    @Override
+                    public void waveformLoaded(double[] samples) {
+                        waveformPanel.setWaveform(samples);
                     }
 
-                    
-                    if (sampleBuffer > 200) {
-                        lineCount++;
-                        sampleBuffer = 0;
-
-                        int lineBuffer = 0;
-                        int lineIndex = 0;
-
-                        
-                        for (int j = i; j < Math.min(i + 5000, smoothedFrequency.length - 1); j++) {
-                            lineBuffer++;
-
-                            
-                            if (lineBuffer > 12) {
-                                lineBuffer = 0;
-
-                                
-                                if (lineIndex < IMAGE_WIDTH && lineCount < IMAGE_HEIGHT) {
-                                    int pixelValue;
-                                    if (smoothedFrequency[j] < BLACK_FREQ) {
-                                        pixelValue = 0; 
-                                    } else if (smoothedFrequency[j] > WHITE_FREQ) {
-                                        pixelValue = 255; 
-                                    } else {
-                                        pixelValue = (int) (((smoothedFrequency[j] - BLACK_FREQ) / FREQ_RANGE) * 255.0);
-                                    }
-
-                                    
-                                    Color color = new Color(pixelValue, pixelValue, pixelValue);
-                                    imgRef[0].setRGB(lineIndex, lineCount, color.getRGB());
-                                }
-
-                                
-                                lineIndex++;
-                            }
-                        }
+                    @Override
+                    public void waveformLoaded(float[] samples) {
+                        waveformPanel.setWaveform(samples);
                     }
 
-                    
-                    if (smoothedFrequency[i] > 1300) {
-                        sampleBuffer = 0;
+                    @Override
+                    public void progressUpdated(double progress, long position, int rowsDecoded) {
+                        progressChannel.publish(progress, position, rowsDecoded);
                     }
-                    if (i % 1000 == 0) {
-                        final int progressIndex = i;
-                        final int currentLine = lineCount;
-                        final double progress = (double)i / (smoothedFrequency.length - 2800);
-                        SwingUtilities.invokeLater(() -> {
-                            waveformPanel.setProgress(progressIndex);
-                            previewPanel.setCurrentLine(currentLine);
-                            statusBar.updateProgress(progress);
-                        });
+
+                    @Override
+                    public void log(String message) {
+                        logArea.append(message + "\n");
                     }
 
-                }
+                    @Override
+                    public boolean isCancelled() {
+                        return cancelDecoding;
+                    }
+                });
 
-                
-                if (cancelDecoding) {
+                if (result == null) {
                     logArea.append("Decoding cancelled by user.\n");
                     return;
                 }
 
-
-
-                
                 System.out.println("-- Line Count --");
-                System.out.println(lineCount);
+                System.out.println(result.getLineCount());
                 System.out.println("-- Sample Rate --");
-                System.out.println(SAMPLE_RATE);
-                System.out.println("-- Number of Samples --");
-                System.out.println(smoothedFrequency.length);
+                System.out.println(result.getSampleRate());
+                System.out.println("-- Measured Sample Rate --");
+                System.out.printf(Locale.ROOT, "%.1f%n", result.getEstimatedSampleRate());
+                if (result.getSampleCount() >= 0) {
+                    System.out.println("-- Number of Samples --");
+                    System.out.println(result.getSampleCount());
+                }
 
-                
-                BufferedImage croppedImg = cropImage(imgRef[0]);
-                if (croppedImg != null) {
-                    System.out.println(
-                            "Cropped image to dimensions: " + croppedImg.getWidth() + "x" + croppedImg.getHeight());
-                    imgRef[0] = croppedImg;
+                BufferedImage image = result.getImage();
+                if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+                    // Only the grayscale decode trims unwritten lines; colour images keep the mode's size.
+                    System.out.println("Cropped image to dimensions: " + image.getWidth() + "x" + image.getHeight());
                 }
 
-                
-                outputFile = new File("decoded_sstv.png");
-                ImageIO.write(imgRef[0], "png", outputFile);
-                logArea.append("Image saved as 'decoded_sstv.png'\n");
+                File directory = new File(settings.getOutputDirectory());
+                directory.mkdirs();
+                outputFile = decoder.outputFileFor(selectedFile);
+                ImageIO.write(image, settings.getOutputFormat(), outputFile);
+                logArea.append("Image saved as '" + outputFile.getPath() + "'\n");
                 logArea.append("SSTV decoding completed successfully!\n");
 
                 
                 SwingUtilities.invokeLater(() -> {
+                    progressChannel.stop();
                     loadingPanel.setVisible(false);
                     toolBar.setFileSelected(true);
                     toolBar.setImageAvailable(true);
@@ -404,6 +359,7 @@ public class Main {
 
                 
                 SwingUtilities.invokeLater(() -> {
+                    progressChannel.stop();
                     loadingPanel.setVisible(false);
                     toolBar.setFileSelected(true);
                     statusBar.stopTimer();
@@ -416,255 +372,276 @@ public class Main {
         decodingThread.start();
     }
 
-    private static void viewOutput() {
-        if (outputFile != null && outputFile.exists()) {
-            try {
-                Desktop.getDesktop().open(outputFile);
-                statusBar.setStatus("Viewing decoded image");
-            } catch (IOException e) {
-                logArea.append("Error opening output file: " + e.getMessage() + "\n");
-                statusBar.setStatus("Error opening image");
-            }
-        } else {
-            logArea.append("No decoded image available to view\n");
-            statusBar.setStatus("No image available");
+    private static void toggleLive() {
+        if (liveDecoder != null) {
+            liveDecoder.stop();
+            statusBar.setStatus("Stopping live decode...");
+            return;
         }
-    }
-
-    
-    private static double[] bytesToSamples(byte[] audioBytes, AudioFormat format) {
-        int bytesPerSample = format.getSampleSizeInBits() / 8;
-        int numSamples = audioBytes.length / bytesPerSample;
-        double[] samples = new double[numSamples];
 
-        
-        boolean bigEndian = format.isBigEndian();
-        boolean signed = format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+        final BufferedImage[] imgRef = new BufferedImage[1];
+        final ScanlineWriter[] writerRef = new ScanlineWriter[1];
+        liveDecoder = new LiveDecoder(settings.getImageWidth(), settings.getImageHeight(),
+                settings.getBlackFreq(), settings.getWhiteFreq(),
+                settings.getSmoothingFilter(), settings.getSmoothingWindow(), settings.getChannel(),
+                new LiveDecoder.Listener() {
+            @Override
+            public void imageStarted(int imageNumber) {
+                imgRef[0] = new BufferedImage(settings.getImageWidth(), settings.getImageHeight(), BufferedImage.TYPE_BYTE_GRAY);
+                writerRef[0] = new ScanlineWriter(imgRef[0]);
+                BufferedImage image = imgRef[0];
+                SwingUtilities.invokeLater(() -> {
+                    previewPanel.setImage(image);
+                    statusBar.setStatus("Live - receiving image " + imageNumber);
+                });
+            }
 
-        for (int i = 0; i < numSamples; i++) {
-            int sampleIndex = i * bytesPerSample;
-            int sample = 0;
+            @Override
+            public void lineDecoded(int line, int[] pixels, int count) {
+                writerRef[0].lineDecoded(line, pixels, count);
+                SwingUtilities.invokeLater(() -> previewPanel.setCurrentLine(line));
+            }
 
-            
-            if (bytesPerSample == 1) {
-                sample = audioBytes[sampleIndex] & 0xFF;
-                if (signed && sample > 127)
-                    sample -= 256;
-            } else if (bytesPerSample == 2) {
-                if (bigEndian) {
-                    sample = ((audioBytes[sampleIndex] & 0xFF) << 8) | (audioBytes[sampleIndex + 1] & 0xFF);
-                } else {
-                    sample = ((audioBytes[sampleIndex + 1] & 0xFF) << 8) | (audioBytes[sampleIndex] & 0xFF);
+            @Override
+            public void imageCompleted(int imageNumber, int lines) {
+                try {
+                    File file = saveLiveImage(imgRef[0], new File(settings.getOutputDirectory()), settings.getOutputFormat());
+                    outputFile = file;
+                    logArea.append("Live image " + imageNumber + " (" + lines + " lines) saved as " + file.getName() + "\n");
+                    SwingUtilities.invokeLater(() -> toolBar.setImageAvailable(true));
+                } catch (IOException e) {
+                    logArea.append("Error saving live image: " + e.getMessage() + "\n");
                 }
-                if (signed && sample > 32767)
-                    sample -= 65536;
             }
 
-            
-            if (signed) {
-                samples[i] = sample / (double) (1 << (format.getSampleSizeInBits() - 1));
-            } else {
-                samples[i] = (sample / (double) ((1 << format.getSampleSizeInBits()) - 1)) * 2.0 - 1.0;
+            @Override
+            public void stopped(Exception error) {
+                SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        logArea.append("Live decoding failed: " + error.getMessage() + "\n");
+                    }
+                    liveDecoder = null;
+                    toolBar.setLiveRunning(false);
+                    toolBar.setFileSelected(selectedFile != null);
+                    statusBar.setStatus("Live decoding stopped");
+                });
             }
-        }
-
-        return samples;
-    }
-
-    
-    private static double[] stereoToMono(double[] stereoSamples) {
-        int monoLength = stereoSamples.length / 2;
-        double[] monoSamples = new double[monoLength];
+        });
 
-        for (int i = 0; i < monoLength; i++) {
-            monoSamples[i] = stereoSamples[i * 2];
+        try {
+            liveDecoder.startCapture();
+            toolBar.setLiveRunning(true);
+            logArea.append("Live decoding started from default audio input\n");
+            statusBar.setStatus("Live - waiting for signal");
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            liveDecoder = null;
+            toolBar.setLiveRunning(false);
+            logArea.append("Audio input unavailable: " + e.getMessage() + "\n");
+            statusBar.setStatus("Audio input unavailable");
         }
-
-        return monoSamples;
     }
 
-    
-    private static double[] calculateInstantaneousFrequency(double[] signal, int sampleRate) {
-        
-        Complex[] complexSignal = new Complex[signal.length];
-        for (int i = 0; i < signal.length; i++) {
-            complexSignal[i] = new Complex(signal[i], 0);
-        }
-
-        
-        int paddedLength = nextPowerOfTwo(signal.length);
-        Complex[] paddedSignal = new Complex[paddedLength];
-        for (int i = 0; i < paddedLength; i++) {
-            if (i < signal.length) {
-                paddedSignal[i] = complexSignal[i];
-            } else {
-                paddedSignal[i] = Complex.ZERO;
+    private static void runLiveReplay(File wavFile, File outputDir) {
+        final BufferedImage[] imgRef = new BufferedImage[1];
+        final ScanlineWriter[] writerRef = new ScanlineWriter[1];
+        long startTime = System.currentTimeMillis();
+        LiveDecoder decoder = new LiveDecoder(settings.getImageWidth(), settings.getImageHeight(),
+                settings.getBlackFreq(), settings.getWhiteFreq(),
+                settings.getSmoothingFilter(), settings.getSmoothingWindow(), settings.getChannel(),
+                new LiveDecoder.Listener() {
+            @Override
+            public void imageStarted(int imageNumber) {
+                imgRef[0] = new BufferedImage(settings.getImageWidth(), settings.getImageHeight(), BufferedImage.TYPE_BYTE_GRAY);
+                writerRef[0] = new ScanlineWriter(imgRef[0]);
             }
-        }
-
-        
-        FastFourierTransformer transformer = new FastFourierTransformer(DftNormalization.STANDARD);
-        Complex[] fftResult = transformer.transform(paddedSignal, TransformType.FORWARD);
 
-        
-        int halfLength = paddedLength / 2;
-        for (int i = halfLength + 1; i < paddedLength; i++) {
-            fftResult[i] = Complex.ZERO;
-        }
-        
-        fftResult[0] = fftResult[0].multiply(0.5);
-        fftResult[halfLength] = fftResult[halfLength].multiply(0.5);
+            @Override
+            public void lineDecoded(int line, int[] pixels, int count) {
+                writerRef[0].lineDecoded(line, pixels, count);
+            }
 
-        
-        Complex[] ifftResult = transformer.transform(fftResult, TransformType.INVERSE);
+            @Override
+            public void imageCompleted(int imageNumber, int lines) {
+                try {
+                    File file = saveLiveImage(imgRef[0], outputDir, "png");
+                    System.out.println("Image " + imageNumber + ": " + lines + " lines -> " + file.getPath());
+                } catch (IOException e) {
+                    System.err.println("Error saving image: " + e.getMessage());
+                }
+            }
 
-        
-        double[] real = new double[signal.length];
-        double[] imag = new double[signal.length];
-        for (int i = 0; i < signal.length; i++) {
-            real[i] = ifftResult[i].getReal();
-            imag[i] = ifftResult[i].getImaginary();
-        }
+            @Override
+            public void stopped(Exception error) {
+                if (error != null) {
+                    System.err.println("Live decoding failed: " + error.getMessage());
+                }
+            }
+        });
 
-        
-        double[] phase = new double[signal.length];
-        for (int i = 0; i < signal.length; i++) {
-            phase[i] = Math.atan2(imag[i], real[i]);
+        try {
+            decoder.startReplay(wavFile);
+            decoder.join();
+            System.out.println("Replay finished in " + (System.currentTimeMillis() - startTime) + " ms, dropped samples: "
+                    + decoder.getDroppedSamples());
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Replay failed: " + e.getMessage());
         }
+    }
 
-        
-        double[] unwrappedPhase = unwrapPhase(phase);
-
-        
-        double[] instFreq = new double[signal.length - 1];
-        for (int i = 0; i < instFreq.length; i++) {
-            double phaseDiff = unwrappedPhase[i + 1] - unwrappedPhase[i];
-            instFreq[i] = (phaseDiff / (2.0 * Math.PI)) * sampleRate;
+    private static File saveLiveImage(BufferedImage image, File directory, String format) throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        File file = new File(directory, "live_" + timestamp + "." + format);
+        for (int n = 2; file.exists(); n++) {
+            file = new File(directory, "live_" + timestamp + "_" + n + "." + format);
         }
-
-        return instFreq;
+        ImageIO.write(ScanlineWriter.cropImage(image), format, file);
+        return file;
     }
 
-    
-    private static double[] unwrapPhase(double[] phase) {
-        double[] unwrapped = new double[phase.length];
-        unwrapped[0] = phase[0];
-
-        for (int i = 1; i < phase.length; i++) {
-            double diff = phase[i] - phase[i - 1];
-
-            
-            if (diff > Math.PI) {
-                diff -= 2 * Math.PI;
-            } else if (diff < -Math.PI) {
-                diff += 2 * Math.PI;
+    private static void viewOutput() {
+        if (outputFile != null && outputFile.exists()) {
+            try {
+                Desktop.getDesktop().open(outputFile);
+                statusBar.setStatus("Viewing decoded image");
+            } catch (IOException e) {
+                logArea.append("Error opening output file: " + e.getMessage() + "\n");
+                statusBar.setStatus("Error opening image");
             }
-
-            unwrapped[i] = unwrapped[i - 1] + diff;
+        } else {
+            logArea.append("No decoded image available to view\n");
+            statusBar.setStatus("No image available");
         }
-
-        return unwrapped;
     }
+}
+/**
+ * Recording overview with the decode progress over it. The min/max pyramid is built in the
+ * background when a waveform arrives, and painting reads one envelope entry per column from it.
+ * The mouse wheel zooms around the pointer, dragging scrolls, and a double click shows it all.
+ */
+class WaveformPanel extends JPanel {
+    private static final int MIN_VISIBLE_SAMPLES = 256;
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private WaveformOverview overview;
+    private long progress = 0;
+    private long viewStart;
+    private long viewLength;
+    private float[] envelopeMin = new float[0];
+    private float[] envelopeMax = new float[0];
+    private boolean envelopeValid;
+    private int dragX;
+    private long dragStart;
+
+    WaveformPanel() {
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(1.25, e.getPreciseWheelRotation()), e.getX());
+            }
 
-    
-    private static double[] smoothArray(double[] array, int windowSize) {
-        double[] smoothed = new double[array.length];
-
-        for (int i = 0; i < array.length; i++) {
-            double sum = 0;
-            int count = 0;
-
-            for (int j = Math.max(0, i - windowSize / 2); j <= Math.min(array.length - 1, i + windowSize / 2); j++) {
-                sum += array[j];
-                count++;
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragStart = viewStart;
             }
 
-            smoothed[i] = sum / count;
-        }
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (overview != null && getWidth() > 0) {
+                    setView(dragStart - (long) ((e.getX() - dragX) * (double) viewLength / getWidth()), viewLength);
+                }
+            }
 
-        return smoothed;
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && overview != null) {
+                    setView(0, overview.length());
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
     }
 
-    
-    private static int nextPowerOfTwo(int n) {
-        int power = 1;
-        while (power < n) {
-            power *= 2;
-        }
-        return power;
+    /** May be called from any thread; the overview is built off the EDT and shown once ready. */
+    public void setWaveform(double[] waveform) {
+        setOverview(() -> new WaveformOverview(waveform));
     }
 
+    public void setWaveform(float[] waveform) {
+        setOverview(() -> new WaveformOverview(waveform));
+    }
 
+    private void setOverview(Supplier<WaveformOverview> builder) {
+        int built = generation.incrementAndGet();
+        CompletableFuture.supplyAsync(builder)
+                .thenAccept(result -> SwingUtilities.invokeLater(() -> {
+                    if (built == generation.get()) {
+                        overview = result;
+                        setView(0, result.length());
+                    }
+                }));
+    }
 
-    private static BufferedImage cropImage(BufferedImage img) {
-        int minX = img.getWidth();
-        int minY = img.getHeight();
-        int maxX = 0;
-        int maxY = 0;
-        boolean foundNonWhite = false;
-
-        for (int x = 0; x < img.getWidth(); x++) {
-            for (int y = 0; y < img.getHeight(); y++) {
-                Color color = new Color(img.getRGB(x, y));
-                int brightness = (color.getRed() + color.getGreen() + color.getBlue()) / 3;
-
-                if (brightness < 255) { 
-                    minX = Math.min(minX, x);
-                    minY = Math.min(minY, y);
-                    maxX = Math.max(maxX, x);
-                    maxY = Math.max(maxY, y);
-                    foundNonWhite = true;
-                }
-            }
-        }
-
-        
-        if (!foundNonWhite) {
-            return img;
-        }
-
-        int croppedWidth = maxX - minX + 1;
-        int croppedHeight = maxY - minY + 1;
+    /** Repaints only the columns between the old and new progress positions. */
+    public void setProgress(long progress) {
+        long previous = this.progress;
+        this.progress = progress;
+        if (overview == null || overview.length() == 0) return;
+        int from = columnOf(Math.min(previous, progress));
+        int to = columnOf(Math.max(previous, progress));
+        repaint(from, 0, to - from + 1, getHeight());
+    }
 
-        return img.getSubimage(minX, minY, croppedWidth, croppedHeight);
+    private int columnOf(long position) {
+        double column = (position - viewStart) / (double) viewLength * getWidth();
+        return (int) Math.max(0, Math.min(getWidth(), column));
     }
-}
-class WaveformPanel extends JPanel {
-    private double[] waveform;
-    private int progress = 0;
 
-    public void setWaveform(double[] waveform) {
-        this.waveform = waveform;
-        repaint();
+    private void zoom(double factor, int x) {
+        if (overview == null || getWidth() == 0) return;
+        long length = (long) Math.max(MIN_VISIBLE_SAMPLES, Math.min(overview.length(), viewLength * factor));
+        long anchor = viewStart + (long) (x / (double) getWidth() * viewLength);
+        setView(anchor - (long) (x / (double) getWidth() * length), length);
     }
 
-    public void setProgress(int progress) {
-        this.progress = progress;
+    private void setView(long start, long length) {
+        viewLength = Math.max(1, length);
+        viewStart = Math.max(0, Math.min(start, overview.length() - viewLength));
+        envelopeValid = false;
         repaint();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (waveform == null || waveform.length == 0) return;
+        if (overview == null || overview.length() == 0) return;
 
         int width = getWidth();
         int height = getHeight();
         g.setColor(Color.BLACK);
         g.fillRect(0, 0, width, height);
 
+        if (!envelopeValid || envelopeMin.length != width) {
+            envelopeMin = new float[width];
+            envelopeMax = new float[width];
+            overview.envelope(viewStart, viewStart + viewLength, width, envelopeMin, envelopeMax);
+            envelopeValid = true;
+        }
+
         g.setColor(Color.LIGHT_GRAY);
         int centerY = height / 2;
-        int step = waveform.length / width;
-
-        for (int i = 0; i < width && i * step < waveform.length; i++) {
-            int idx = i * step;
-            int y = (int) (waveform[idx] * centerY);
-            g.drawLine(i, centerY - y, i, centerY + y);
+        Rectangle clip = g.getClipBounds();
+        int first = clip != null ? Math.max(0, clip.x) : 0;
+        int last = clip != null ? Math.min(width, clip.x + clip.width) : width;
+        for (int i = first; i < last; i++) {
+            if (Float.isNaN(envelopeMin[i])) continue;
+            g.drawLine(i, centerY - (int) (envelopeMax[i] * centerY), i, centerY - (int) (envelopeMin[i] * centerY));
         }
 
         g.setColor(new Color(0, 255, 0, 120));
-        int progressX = (int) ((progress / (double) waveform.length) * width);
+        int progressX = columnOf(progress);
         g.fillRect(0, 0, progressX, height);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,501 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes the lines of any {@link SstvMode} in colour. {@link LineScanner} reports the rising
+ * edge at the end of each sync pulse, and every scan of the line is sampled at the offset the
+ * mode's timing tables give for it, which may lie before the pulse: Scottie sends green and
+ * blue ahead of it. Where lines alternate between layouts, the tones that differ between them
+ * say which one a line is (Robot36's separator is 1500 Hz before V and 2300 Hz before U), and
+ * the rows of one cycle of layouts share the channels each of them carries.
+ * <p>
+ * Once a few lines are in, each line is placed where a {@link SlantCorrector} fit through the
+ * earlier syncs puts it, and its offsets are stretched by the fitted line period, so a drifting
+ * sound card clock neither slants nor jitters the image.
+ * <p>
+ * Pixels are averaged over the middle half of the samples the encoder spent on them, using
+ * offset tables computed once. When the frequencies come from a decimating front end, those
+ * windows are taken from the audio rate's tables and scaled down, so they fall between samples
+ * of the reduced rate; each is then averaged over the frequency track interpolated linearly
+ * between samples, rather than over whole samples. Channels are kept in planar float arrays
+ * and converted to RGB a whole row at a time in straight-line loops the JIT can vectorize.
+ */
+public class ModeSampler implements LineScanner.LineSampler {
+    private static final double TONE_TOLERANCE = 200.0;
+    private static final double SLANT_TOLERANCE = 0.01;
+    private static final int UNKNOWN = -1;
+    private static final int MISMATCH = -2;
+
+    /**
+     * One scan of a layout, placed relative to the end of the sync pulse. Positions are in
+     * samples of the tables it was built from, divided by {@code decimation}; they are whole
+     * samples when that is 1.
+     */
+    private static final class Scan {
+        final int channel;
+        final int row;
+        final double offset;
+        final double end;
+        final double[] start;
+        final double[] count;
+
+        Scan(int channel, int row, int offset, int length, int[] pixelStarts, int decimation) {
+            this.channel = channel;
+            this.row = row;
+            this.offset = (double) offset / decimation;
+            this.end = (double) (offset + length) / decimation;
+            int pixels = pixelStarts.length - 1;
+            this.start = new double[pixels];
+            this.count = new double[pixels];
+            for (int p = 0; p < pixels; p++) {
+                int run = pixelStarts[p + 1] - pixelStarts[p];
+                int quarter = run / 4;
+                start[p] = (double) (pixelStarts[p] + quarter) / decimation;
+                count[p] = (double) Math.max(1, run - 2 * quarter) / decimation;
+            }
+        }
+    }
+
+    /** A tone that tells one layout from the others. */
+    private static final class Marker {
+        final int offset;
+        final int length;
+        final double frequency;
+
+        Marker(int offset, int length, double frequency) {
+            this.offset = offset;
+            this.length = length;
+            this.frequency = frequency;
+        }
+    }
+
+    private final SstvMode mode;
+    private final double blackFreq;
+    private final double whiteFreq;
+    private final BufferedImage image;
+    private final WritableRaster raster;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerLine;
+    private final int layouts;
+    private final boolean fractional;
+    private final double linePeriod;
+    private final int porch;
+    private final double firstSyncEnd;
+    private final Scan[][] scans;
+    private final Marker[][] markers;
+    private final double minFirstScanEnd;
+    private final SlantCorrector slant;
+
+    private final float[][] planes;
+    private final int[] planeWidths;
+    private final boolean[][] received;
+    private final int[][] expand;
+    private final SstvMode.Channel[] shown;
+    private final float[][] rows;
+    private final int[] rgbRow;
+
+    private long start = -1;
+    private long lastSyncEnd = -1;
+    private int lastLine = -1;
+    private int linesDecoded;
+
+    public ModeSampler(SstvMode.Timing timing, BufferedImage image, double blackFreq, double whiteFreq) {
+        this(timing, 1, image, blackFreq, whiteFreq);
+    }
+
+    /**
+     * A sampler for frequencies at {@code timing}'s rate, which a decimating front end produced
+     * from audio at {@code decimation} times that rate. Syncs and tones are looked for with
+     * {@code timing}, but pixels and the line period come from the audio rate's tables.
+     */
+    public ModeSampler(SstvMode.Timing timing, int decimation, BufferedImage image, double blackFreq, double whiteFreq) {
+        this.mode = timing.getMode();
+        if (image.getWidth() < mode.getWidth() || image.getHeight() < mode.getHeight()) {
+            throw new IllegalArgumentException(mode + " needs a " + mode.getWidth() + "x" + mode.getHeight() + " image");
+        }
+        this.image = image;
+        this.raster = image.getRaster();
+        this.blackFreq = blackFreq;
+        this.whiteFreq = whiteFreq;
+
+        this.width = mode.getWidth();
+        this.height = mode.getHeight();
+        this.rowsPerLine = mode.getRowsPerLine();
+        this.layouts = mode.getLayoutCount();
+        this.fractional = decimation > 1;
+        SstvMode.Timing fine = fractional ? mode.timing(timing.getSampleRate() * decimation) : timing;
+        this.linePeriod = (double) fine.getLinePeriod() / decimation;
+        this.porch = timing.getPorchLength();
+        this.firstSyncEnd = (double) fine.getSyncEnd(0) / decimation;
+
+        int channels = SstvMode.Channel.values().length;
+        this.planeWidths = new int[channels];
+        this.scans = new Scan[layouts][];
+        this.markers = new Marker[layouts][];
+        double firstScanEnd = Double.MAX_VALUE;
+        for (int l = 0; l < layouts; l++) {
+            int syncEnd = fine.getSyncEnd(l);
+            int scanCount = 0;
+            for (int s = 0; s < mode.getSegmentCount(l); s++) {
+                if (mode.getSegment(l, s).isScan()) {
+                    scanCount++;
+                }
+            }
+            scans[l] = new Scan[scanCount];
+            int k = 0;
+            for (int s = 0; s < mode.getSegmentCount(l); s++) {
+                SstvMode.Segment segment = mode.getSegment(l, s);
+                if (segment.isScan()) {
+                    int channel = segment.getChannel().ordinal();
+                    scans[l][k++] = new Scan(channel, segment.getRow(), fine.getStart(l, s) - syncEnd,
+                            fine.getLength(l, s), fine.getPixelStarts(l, s), decimation);
+                    planeWidths[channel] = Math.max(planeWidths[channel], segment.getPixels());
+                }
+            }
+            firstScanEnd = Math.min(firstScanEnd, scans[l][0].end);
+            markers[l] = markers(timing, l);
+        }
+        this.minFirstScanEnd = firstScanEnd;
+
+        this.planes = new float[channels][];
+        this.received = new boolean[channels][];
+        this.expand = new int[channels][];
+        for (int c = 0; c < channels; c++) {
+            if (planeWidths[c] > 0) {
+                planes[c] = new float[planeWidths[c] * height];
+                received[c] = new boolean[height];
+                expand[c] = new int[width];
+                for (int x = 0; x < width; x++) {
+                    expand[c][x] = x * planeWidths[c] / width;
+                }
+            }
+        }
+        this.shown = mode.getColorSpace() == SstvMode.ColorSpace.YUV
+                ? new SstvMode.Channel[]{SstvMode.Channel.Y, SstvMode.Channel.U, SstvMode.Channel.V}
+                : new SstvMode.Channel[]{SstvMode.Channel.R, SstvMode.Channel.G, SstvMode.Channel.B};
+        this.rows = new float[shown.length][width];
+        this.rgbRow = new int[width];
+        this.slant = new SlantCorrector(linePeriod, timing.getSampleRate(), linePeriod * SLANT_TOLERANCE);
+    }
+
+    /** A blank image of the size {@code mode} transmits. */
+    public static BufferedImage createImage(SstvMode mode) {
+        return new BufferedImage(mode.getWidth(), mode.getHeight(), BufferedImage.TYPE_INT_RGB);
+    }
+
+    public SstvMode getMode() {
+        return mode;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /** Number of lines placed in the image so far. */
+    public int getLinesDecoded() {
+        return linesDecoded;
+    }
+
+    /** The fit through the sync positions seen so far. */
+    public SlantCorrector getSlant() {
+        return slant;
+    }
+
+    /**
+     * Sample at which the first line begins, such as the end of the VIS header. Lines are then
+     * numbered from there, so a missed first line or a sync pulse before it cannot shift the image.
+     */
+    public void setStart(long position) {
+        this.start = position;
+    }
+
+    @Override
+    public int span() {
+        // Room for the line to be stretched by a slow clock or moved later by the slant fit.
+        double end = 0;
+        for (Scan[] layout : scans) {
+            end = Math.max(end, layout[layout.length - 1].end);
+        }
+        return (int) (end * (1 + SLANT_TOLERANCE)) + porch;
+    }
+
+    @Override
+    public int lead() {
+        double before = 0;
+        for (Scan[] layout : scans) {
+            before = Math.max(before, -layout[0].offset);
+        }
+        return before > 0 ? (int) (before * (1 + SLANT_TOLERANCE)) + porch : 0;
+    }
+
+    @Override
+    public void sampleLine(int lineNumber, double[] freq, int edge, int end, long syncEnd) {
+        if (end < edge + minFirstScanEnd) {
+            return;
+        }
+
+        int line = lineIndex(freq, edge, end, syncEnd);
+        if (line < 0 || line >= mode.getLines()) {
+            return;
+        }
+        Scan[] layout = scans[line % layouts];
+
+        // The scanner reports the first sample past the sync, on average half a sample after the
+        // edge itself; at the reduced rate that half sample is a fair part of a pixel.
+        double origin = fractional ? edge - 0.5 : edge;
+        double scale = 1;
+        if (slant.add(line, syncEnd) && slant.isReady()) {
+            // The porch after the sync leaves room to move the line back without leaving the buffer.
+            double shift = slant.positionOf(line) - syncEnd;
+            if (Math.abs(shift) < porch / 2.0) {
+                origin += shift;
+                scale = slant.period() / linePeriod;
+            }
+        }
+        if (!fits(layout[0], origin, scale, end)) {
+            return;
+        }
+        lastSyncEnd = syncEnd;
+        lastLine = line;
+        linesDecoded++;
+
+        int firstRow = line * rowsPerLine;
+        for (Scan scan : layout) {
+            if (!fits(scan, origin, scale, end)) {
+                continue;
+            }
+            int c = scan.channel;
+            int row = scan.row == SstvMode.Segment.ALL_ROWS ? firstRow : firstRow + scan.row;
+            double base = origin + scale * scan.offset;
+            if (fractional) {
+                sampleWindows(freq, base, scale, scan.start, scan.count, planes[c], row * planeWidths[c]);
+            } else {
+                sampleSegment(freq, base, scale, scan.start, scan.count, planes[c], row * planeWidths[c]);
+            }
+            received[c][row] = true;
+            if (scan.row == SstvMode.Segment.ALL_ROWS) {
+                for (int r = row + 1; r < firstRow + rowsPerLine; r++) {
+                    System.arraycopy(planes[c], row * planeWidths[c], planes[c], r * planeWidths[c], planeWidths[c]);
+                    received[c][r] = true;
+                }
+            }
+        }
+
+        int groupStart = (line - line % layouts) * rowsPerLine;
+        for (int r = groupStart; r < firstRow + rowsPerLine; r++) {
+            renderRow(r);
+        }
+    }
+
+    private static boolean fits(Scan scan, double origin, double scale, int end) {
+        return origin + scale * scan.offset >= 0 && origin + scale * scan.end + 1 <= end;
+    }
+
+    /**
+     * Line number for the line whose sync ends at {@code syncEnd}, or -1 if it does not look like
+     * a line of this mode. The marker tones give the line's layout and the time since the last
+     * line, or since the start, gives how many lines were skipped.
+     */
+    private int lineIndex(double[] freq, int edge, int end, long syncEnd) {
+        int phase = layouts == 1 ? 0 : layoutAt(freq, edge, end);
+        if (phase == MISMATCH) {
+            return -1;
+        }
+
+        double expected;
+        if (lastLine >= 0) {
+            expected = lastLine + (syncEnd - lastSyncEnd) / slant.period();
+        } else if (start >= 0) {
+            expected = (syncEnd - start - firstSyncEnd) / slant.period();
+        } else {
+            return phase;
+        }
+        int line = (int) Math.round(expected);
+        if (phase >= 0 && line % layouts != phase) {
+            int later = line + Math.floorMod(phase - line, layouts);
+            int earlier = later - layouts;
+            line = later - expected < expected - earlier ? later : earlier;
+        }
+        return line > lastLine ? line : -1;
+    }
+
+    /** Layout whose marker tones all match, {@link #UNKNOWN} if they are not all in, or {@link #MISMATCH}. */
+    private int layoutAt(double[] freq, int edge, int end) {
+        for (int l = 0; l < layouts; l++) {
+            boolean match = true;
+            for (Marker marker : markers[l]) {
+                int margin = marker.length / 5;
+                int from = edge + marker.offset + margin;
+                int to = edge + marker.offset + marker.length - margin;
+                if (edge + marker.offset < 0 || edge + marker.offset + marker.length > end) {
+                    return UNKNOWN;
+                }
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += freq[i];
+                }
+                if (Math.abs(sum / (to - from) - marker.frequency) >= TONE_TOLERANCE) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                return l;
+            }
+        }
+        return MISMATCH;
+    }
+
+    /** Tones of {@code layout} that some other layout does not send at the same offset. */
+    private static Marker[] markers(SstvMode.Timing timing, int layout) {
+        SstvMode mode = timing.getMode();
+        List<Marker> found = new ArrayList<>();
+        for (int s = 0; s < mode.getSegmentCount(layout); s++) {
+            SstvMode.Segment segment = mode.getSegment(layout, s);
+            if (segment.isScan() || segment.isSync()) {
+                continue;
+            }
+            int offset = timing.getStart(layout, s) - timing.getSyncEnd(layout);
+            for (int other = 0; other < mode.getLayoutCount(); other++) {
+                if (!hasTone(timing, other, offset, segment.getFrequency())) {
+                    found.add(new Marker(offset, timing.getLength(layout, s), segment.getFrequency()));
+                    break;
+                }
+            }
+        }
+        return found.toArray(new Marker[0]);
+    }
+
+    private static boolean hasTone(SstvMode.Timing timing, int layout, int offset, double frequency) {
+        SstvMode mode = timing.getMode();
+        for (int s = 0; s < mode.getSegmentCount(layout); s++) {
+            SstvMode.Segment segment = mode.getSegment(layout, s);
+            if (!segment.isScan() && segment.getFrequency() == frequency
+                    && timing.getStart(layout, s) - timing.getSyncEnd(layout) == offset) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Levels of the pixels of one segment starting at sample {@code base}, with offsets stretched
+     * by {@code scale}. Each window starts on the nearest sample and keeps its whole-sample length.
+     */
+    private void sampleSegment(double[] freq, double base, double scale, double[] start, double[] count, float[] out, int offset) {
+        double toLevel = 255.0 / (whiteFreq - blackFreq);
+        for (int x = 0; x < start.length; x++) {
+            int first = (int) (base + scale * start[x] + 0.5);
+            int n = (int) count[x];
+            double sum = 0;
+            for (int i = first; i < first + n; i++) {
+                sum += freq[i];
+            }
+            out[offset + x] = (float) ((sum / n - blackFreq) * toLevel);
+        }
+    }
+
+    /**
+     * Like {@link #sampleSegment}, but each window keeps its fractional start and length, and
+     * the frequency is averaged over it as a line drawn between samples: every stretch between
+     * two samples contributes its overlap times the interpolated value at its middle.
+     */
+    private void sampleWindows(double[] freq, double base, double scale, double[] start, double[] count, float[] out, int offset) {
+        double toLevel = 255.0 / (whiteFreq - blackFreq);
+        for (int x = 0; x < start.length; x++) {
+            double from = base + scale * start[x];
+            double to = from + scale * count[x];
+            double sum = 0;
+            for (int i = (int) from; i < to; i++) {
+                double lo = Math.max(from, i);
+                double hi = Math.min(to, i + 1);
+                double a = freq[i];
+                sum += (hi - lo) * (a + (freq[i + 1] - a) * ((lo + hi) / 2 - i));
+            }
+            out[offset + x] = (float) ((sum / (to - from) - blackFreq) * toLevel);
+        }
+    }
+
+    private void renderRow(int row) {
+        if (row >= height) {
+            return;
+        }
+        for (int k = 0; k < shown.length; k++) {
+            SstvMode.Channel channel = shown[k];
+            expandRow(channel.ordinal(), sourceRow(channel.ordinal(), row), rows[k],
+                    channel == SstvMode.Channel.U || channel == SstvMode.Channel.V ? 128f : 0f);
+        }
+        if (mode.getColorSpace() == SstvMode.ColorSpace.YUV) {
+            yuvToRgb(rows[0], 0, rows[1], rows[2], rgbRow);
+        } else {
+            packRgb(rows[0], rows[1], rows[2], rgbRow);
+        }
+        raster.setDataElements(0, row, width, 1, rgbRow);
+    }
+
+    /**
+     * Row whose copy of {@code channel} to show on {@code row}: its own, else one from the same
+     * cycle of layouts, else the nearest earlier one, or -1 if none has arrived.
+     */
+    private int sourceRow(int channel, int row) {
+        boolean[] has = received[channel];
+        if (has[row]) {
+            return row;
+        }
+        int group = layouts * rowsPerLine;
+        int groupStart = row - row % group;
+        for (int r = groupStart; r < Math.min(groupStart + group, height); r++) {
+            if (has[r]) {
+                return r;
+            }
+        }
+        for (int r = groupStart - 1; r >= 0; r--) {
+            if (has[r]) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /** Stretches a channel row to full width, or fills it with {@code neutral} if none was received. */
+    private void expandRow(int channel, int source, float[] row, float neutral) {
+        if (source < 0) {
+            Arrays.fill(row, neutral);
+            return;
+        }
+        float[] plane = planes[channel];
+        int[] index = expand[channel];
+        int offset = source * planeWidths[channel];
+        for (int x = 0; x < width; x++) {
+            row[x] = plane[offset + index[x]];
+        }
+    }
+
+    /** Inverse of the encoder's conversion, packed as opaque RGB. */
+    static void yuvToRgb(float[] luma, int offset, float[] u, float[] v, int[] rgb) {
+        for (int x = 0; x < rgb.length; x++) {
+            float y = luma[offset + x];
+            float rMinusY = (v[x] - 128f) * (1f / 0.877f);
+            float bMinusY = (u[x] - 128f) * (1f / 0.492f);
+            float gMinusY = -(0.299f / 0.587f) * rMinusY - (0.114f / 0.587f) * bMinusY;
+            int r = Math.max(0, Math.min(255, (int) (y + rMinusY + 0.5f)));
+            int g = Math.max(0, Math.min(255, (int) (y + gMinusY + 0.5f)));
+            int b = Math.max(0, Math.min(255, (int) (y + bMinusY + 0.5f)));
+            rgb[x] = 0xFF000000 | r << 16 | g << 8 | b;
+        }
+    }
+
+    static void packRgb(float[] red, float[] green, float[] blue, int[] rgb) {
+        for (int x = 0; x < rgb.length; x++) {
+            int r = Math.max(0, Math.min(255, (int) (red[x] + 0.5f)));
+            int g = Math.max(0, Math.min(255, (int) (green[x] + 0.5f)));
+            int b = Math.max(0, Math.min(255, (int) (blue[x] + 0.5f)));
+            rgb[x] = 0xFF000000 | r << 16 | g << 8 | b;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts interleaved PCM frames to samples in [-1, 1), taking one channel or the mean of all
+ * of them. The encoding, sample size and byte order are resolved once, when the converter is
+ * made, to one of a fixed set of loops, so converting a block does no per-sample dispatch.
+ * <p>
+ * Handles 8-, 16-, 24- and 32-bit integer PCM, signed or unsigned, and 32- and 64-bit float,
+ * in either byte order. Float conversion keeps a scratch block, so instances are not thread-safe.
+ */
+public final class PcmConverter {
+    /** Channel index that averages every channel instead of taking one. */
+    public static final int DOWNMIX = -1;
+
+    private static final int SCRATCH_FRAMES = 4096;
+
+    private enum Layout { U8, S8, U16, S16, S24, S32, F32, F64 }
+
+    private final Layout layout;
+    private final ByteOrder order;
+    private final int channels;
+    private final int bytesPerSample;
+    private final int frameSize;
+    private double[] scratch;
+
+    public PcmConverter(AudioFormat format) throws UnsupportedAudioFileException {
+        this.channels = format.getChannels();
+        this.bytesPerSample = format.getSampleSizeInBits() / 8;
+        this.frameSize = format.getFrameSize();
+        this.order = format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.layout = layoutOf(format);
+        if (channels < 1 || frameSize < channels * bytesPerSample) {
+            throw new UnsupportedAudioFileException("Malformed audio format: " + format);
+        }
+    }
+
+    private static Layout layoutOf(AudioFormat format) throws UnsupportedAudioFileException {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        boolean signed = AudioFormat.Encoding.PCM_SIGNED.equals(encoding);
+        if (signed || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+            switch (bits) {
+                case 8:
+                    return signed ? Layout.S8 : Layout.U8;
+                case 16:
+                    return signed ? Layout.S16 : Layout.U16;
+                case 24:
+                    if (signed) {
+                        return Layout.S24;
+                    }
+                    break;
+                case 32:
+                    if (signed) {
+                        return Layout.S32;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } else if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding)) {
+            if (bits == 32) {
+                return Layout.F32;
+            }
+            if (bits == 64) {
+                return Layout.F64;
+            }
+        }
+        throw new UnsupportedAudioFileException("Unsupported audio encoding: " + format);
+    }
+
+    /**
+     * A converter that treats every sample of {@code format} as a frame of its own, so
+     * converting {@code n * channels} of them yields all channels interleaved.
+     */
+    public static PcmConverter interleaved(AudioFormat format) throws UnsupportedAudioFileException {
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        return new PcmConverter(new AudioFormat(format.getEncoding(), format.getSampleRate(),
+                format.getSampleSizeInBits(), 1, bytesPerSample, format.getSampleRate(), format.isBigEndian()));
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Converts {@code frames} frames starting at byte {@code position} of {@code source} into
+     * {@code out}. {@code channel} picks one channel, or is {@link #DOWNMIX} to average them.
+     * The buffer's own byte order is ignored.
+     */
+    public void convert(ByteBuffer source, int position, int frames, int channel, double[] out, int offset) {
+        if (channel < DOWNMIX || channel >= channels) {
+            throw new IllegalArgumentException("No channel " + channel + " in a " + channels + "-channel recording");
+        }
+        ByteBuffer in = source.order() == order ? source : source.duplicate().order(order);
+        if (channel != DOWNMIX || channels == 1) {
+            convertChannel(in, position + Math.max(channel, 0) * bytesPerSample, frames, out, offset, false);
+            return;
+        }
+        for (int c = 0; c < channels; c++) {
+            convertChannel(in, position + c * bytesPerSample, frames, out, offset, c > 0);
+        }
+        double scale = 1.0 / channels;
+        for (int i = 0; i < frames; i++) {
+            out[offset + i] *= scale;
+        }
+    }
+
+    /** Single-precision version of {@link #convert(ByteBuffer, int, int, int, double[], int)}. */
+    public void convert(ByteBuffer source, int position, int frames, int channel, float[] out, int offset) {
+        if (scratch == null) {
+            scratch = new double[SCRATCH_FRAMES];
+        }
+        for (int done = 0; done < frames; done += SCRATCH_FRAMES) {
+            int count = Math.min(SCRATCH_FRAMES, frames - done);
+            convert(source, position + done * frameSize, count, channel, scratch, 0);
+            for (int i = 0; i < count; i++) {
+                out[offset + done + i] = (float) scratch[i];
+            }
+        }
+    }
+
+    /**
+     * One channel, every {@code frameSize} bytes from {@code position}. When {@code add} is set
+     * the samples are summed into {@code out}; the test is loop-invariant, so it costs nothing.
+     */
+    private void convertChannel(ByteBuffer in, int position, int frames, double[] out, int offset, boolean add) {
+        int p = position;
+        int step = frameSize;
+        switch (layout) {
+            case U8:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = ((in.get(p) & 0xFF) / 255.0) * 2.0 - 1.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            case S8:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = in.get(p) / 128.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            case U16:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = ((in.getShort(p) & 0xFFFF) / 65535.0) * 2.0 - 1.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            case S16:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = in.getShort(p) / 32768.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            case S24: {
+                // The most significant byte is read signed, which sign-extends the whole sample.
+                int hi = order == ByteOrder.BIG_ENDIAN ? 0 : 2;
+                int lo = 2 - hi;
+                for (int i = 0; i < frames; i++, p += step) {
+                    int s = in.get(p + hi) << 16 | (in.get(p + 1) & 0xFF) << 8 | (in.get(p + lo) & 0xFF);
+                    double v = s / 8388608.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            }
+            case S32:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = in.getInt(p) / 2147483648.0;
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            case F32:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = in.getFloat(p);
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+            default:
+                for (int i = 0; i < frames; i++, p += step) {
+                    double v = in.getDouble(p);
+                    out[offset + i] = add ? out[offset + i] + v : v;
+                }
+                break;
+        }
+    }
+}
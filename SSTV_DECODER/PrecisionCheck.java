@@ -0,0 +1,94 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Compares the single-precision decode with the double one on real recordings. For each WAV
+ * file it prints how far the smoothed frequency tracks drift apart, in hertz and in grey levels,
+ * and how far the two decoded images differ. The exit status is 1 if any pixel channel differs by
+ * more than the tolerance.
+ * <pre>
+ *   java PrecisionCheck [--tolerance levels] recording.wav...
+ * </pre>
+ */
+public class PrecisionCheck {
+    private PrecisionCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tolerance = 1;
+        boolean failed = false;
+        DecoderSettings settings = new DecoderSettings();
+        double hertzPerLevel = (settings.getWhiteFreq() - settings.getBlackFreq()) / 255.0;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--tolerance".equals(args[i]) && i + 1 < args.length) {
+                tolerance = Integer.parseInt(args[++i]);
+                continue;
+            }
+            File file = new File(args[i]);
+
+            double[] wide;
+            float[] narrow;
+            int sampleRate;
+            try (WavFile wav = WavFile.open(file)) {
+                sampleRate = Math.round(wav.getFormat().getSampleRate());
+                wide = new double[(int) wav.getFrameLength()];
+                narrow = new float[wide.length];
+                wav.read(0, 0, wide, 0, wide.length);
+                wav.read(0, 0, narrow, 0, narrow.length);
+            }
+            double[] wideFrequency = SstvDecoder.calculateInstantaneousFrequency(wide, sampleRate);
+            float[] narrowFrequency = SstvDecoder.calculateInstantaneousFrequency(narrow, sampleRate);
+            LowPassFilter.apply(settings.getSmoothingFilter(), settings.getSmoothingWindow(), wideFrequency, wideFrequency);
+            LowPassFilter.apply(settings.getSmoothingFilter(), settings.getSmoothingWindow(), narrowFrequency, narrowFrequency);
+
+            double maxError = 0;
+            double squaredError = 0;
+            for (int k = 0; k < wideFrequency.length; k++) {
+                double error = Math.abs(narrowFrequency[k] - wideFrequency[k]);
+                maxError = Math.max(maxError, error);
+                squaredError += error * error;
+            }
+            double rmsError = Math.sqrt(squaredError / wideFrequency.length);
+
+            settings.setSinglePrecision(false);
+            BufferedImage expected = new SstvDecoder(settings).decode(file, SstvDecoder.Listener.NONE).getImage();
+            settings.setSinglePrecision(true);
+            BufferedImage actual = new SstvDecoder(settings).decode(file, SstvDecoder.Listener.NONE).getImage();
+            settings.setSinglePrecision(false);
+
+            int maxDifference = 0;
+            int differing = 0;
+            double squaredDifference = 0;
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    int a = expected.getRGB(x, y);
+                    int b = actual.getRGB(x, y);
+                    if (a != b) {
+                        differing++;
+                    }
+                    for (int shift = 0; shift < 24; shift += 8) {
+                        int difference = Math.abs((a >> shift & 0xFF) - (b >> shift & 0xFF));
+                        maxDifference = Math.max(maxDifference, difference);
+                        squaredDifference += difference * difference;
+                    }
+                }
+            }
+            int channels = 3 * expected.getWidth() * expected.getHeight();
+            double psnr = squaredDifference == 0 ? Double.POSITIVE_INFINITY
+                    : 10 * Math.log10(255.0 * 255.0 * channels / squaredDifference);
+            boolean ok = maxDifference <= tolerance;
+            failed |= !ok;
+
+            System.out.printf(Locale.ROOT,
+                    "%-28s frequency max %.4f Hz (%.3f levels) rms %.5f Hz   pixels %d differ, max %d, PSNR %.1f dB%s%n",
+                    file.getName(), maxError, maxError / hertzPerLevel, rmsError,
+                    differing, maxDifference, psnr, ok ? "" : "   FAIL");
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
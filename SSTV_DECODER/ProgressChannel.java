@@ -0,0 +1,78 @@
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Carries decode progress from a worker thread to Swing without queueing an EDT task per
+ * update. The worker overwrites a single snapshot as often as it likes; a Swing timer picks up
+ * the latest one a fixed number of times a second and passes it on only if it changed, so the
+ * UI does the same work however long the file is.
+ */
+public final class ProgressChannel {
+    /** Receives snapshots on the EDT. */
+    public interface Listener {
+        void progressChanged(Snapshot snapshot);
+    }
+
+    public static final class Snapshot {
+        private final double progress;
+        private final long position;
+        private final int rowsDecoded;
+
+        Snapshot(double progress, long position, int rowsDecoded) {
+            this.progress = progress;
+            this.position = position;
+            this.rowsDecoded = rowsDecoded;
+        }
+
+        /** Fraction of the file decoded, 0 to 1. */
+        public double getProgress() {
+            return progress;
+        }
+
+        /** Sample position in the file. */
+        public long getPosition() {
+            return position;
+        }
+
+        public int getRowsDecoded() {
+            return rowsDecoded;
+        }
+    }
+
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private final Listener listener;
+    private final Timer timer;
+    private Snapshot shown;
+
+    public ProgressChannel(int updatesPerSecond, Listener listener) {
+        this.listener = listener;
+        this.timer = new Timer(1000 / updatesPerSecond, e -> poll());
+        timer.setCoalesce(true);
+    }
+
+    /** Replaces the pending snapshot; safe to call from any thread. */
+    public void publish(double progress, long position, int rowsDecoded) {
+        latest.set(new Snapshot(progress, position, rowsDecoded));
+    }
+
+    /** Starts passing snapshots on. Call on the EDT. */
+    public void start() {
+        latest.set(null);
+        shown = null;
+        timer.start();
+    }
+
+    /** Passes on the last snapshot published, if not already shown, and stops. Call on the EDT. */
+    public void stop() {
+        timer.stop();
+        poll();
+    }
+
+    private void poll() {
+        Snapshot snapshot = latest.get();
+        if (snapshot != null && snapshot != shown) {
+            shown = snapshot;
+            listener.progressChanged(snapshot);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * In-place radix-2 FFT on split real/imaginary arrays of element array type {@code A}. This class
+ * holds everything that does not depend on the element type: size checks, twiddle angles, the
+ * bit-reversal order, the cache-blocked stage schedule and the real-input packing scheme.
+ * {@link Fft} and {@link FloatFft} supply the tables and the loops that touch elements.
+ */
+abstract class RadixTwoFft<A> {
+    private final int size;
+    private final int log2Size;
+    private final int cacheBlock;
+    private final int[] bitReverse;
+
+    RadixTwoFft(int size, int cacheBlock) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.log2Size = Integer.numberOfTrailingZeros(size);
+        this.cacheBlock = cacheBlock;
+
+        bitReverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = log2Size == 0 ? 0 : Integer.reverse(i) >>> (32 - log2Size);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void forward(A re, A im) {
+        transform(re, im, size, -1);
+    }
+
+    /**
+     * Forward transform of only the first {@code length} elements, where {@code length} is a
+     * power of two no larger than this transform's size.
+     */
+    public void forward(A re, A im, int length) {
+        if (length > size || Integer.bitCount(length) != 1) {
+            throw new IllegalArgumentException("Invalid sub-transform length: " + length);
+        }
+        transform(re, im, length, -1);
+    }
+
+    /** Inverse transform, scaled by 1/n so that inverse(forward(x)) == x. */
+    public void inverse(A re, A im) {
+        transform(re, im, size, 1);
+        scale(re, im, 0, size, 1.0 / size);
+    }
+
+    /**
+     * Spectrum bins 0..n/2 of the first {@code length} samples of a real signal, zero-padded to
+     * the transform size. From four points up, even and odd samples are packed into a
+     * half-length complex transform and the two halves are separated afterwards; bins above
+     * n/2 are left undefined.
+     */
+    void realForward(A signal, int length, A re, A im) {
+        if (size < 4) {
+            int used = Math.min(length, size);
+            System.arraycopy(signal, 0, re, 0, used);
+            clear(re, used, size);
+            clear(im, 0, size);
+            forward(re, im);
+            return;
+        }
+        int half = size / 2;
+        pack(signal, length, re, im, half);
+        transform(re, im, half, -1);
+        split(re, im, half);
+    }
+
+    /**
+     * Fills the twiddle table through {@link #setTwiddle}. The factors for the stage with
+     * butterfly span h live at [h, 2h), so each stage reads them contiguously; every stage takes
+     * its angles from the largest stage's, so all stages share the same rounding.
+     */
+    final void fillTwiddles() {
+        int largest = size / 2;
+        for (int half = largest; half >= 1; half >>= 1) {
+            int stride = largest / half;
+            for (int k = 0; k < half; k++) {
+                double angle = Math.PI * (k * stride) / largest;
+                setTwiddle(half + k, Math.cos(angle), Math.sin(angle));
+            }
+        }
+    }
+
+    private void transform(A re, A im, int length, int sign) {
+        int shift = log2Size - Integer.numberOfTrailingZeros(length);
+        for (int i = 0; i < length; i++) {
+            int j = bitReverse[i] >>> shift;
+            if (j > i) {
+                swap(re, im, i, j);
+            }
+        }
+
+        int block = Math.min(length, cacheBlock);
+        for (int offset = 0; offset < length; offset += block) {
+            firstStages(re, im, offset, offset + block, sign);
+            for (int half = 4; half < block; half <<= 1) {
+                butterflies(re, im, offset, offset + block, half, sign);
+            }
+        }
+        for (int half = block; half < length; half <<= 1) {
+            butterflies(re, im, 0, length, half, sign);
+        }
+    }
+
+    abstract void setTwiddle(int index, double cos, double sin);
+
+    abstract void swap(A re, A im, int i, int j);
+
+    /** The twiddle factors of the first two stages are 1 and +/-i, so no multiplies are needed. */
+    abstract void firstStages(A re, A im, int from, int to, int sign);
+
+    abstract void butterflies(A re, A im, int from, int to, int half, int sign);
+
+    /** Multiplies elements {@code from} to {@code to} of both arrays by {@code factor}. */
+    abstract void scale(A re, A im, int from, int to, double factor);
+
+    abstract void clear(A values, int from, int to);
+
+    /** Packs even samples into {@code re} and odd ones into {@code im}, zero-padding to {@code half}. */
+    abstract void pack(A signal, int length, A re, A im, int half);
+
+    /** Separates the half-length transform of the packed signal into bins 0..2 * half. */
+    abstract void split(A re, A im, int half);
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+
+/**
+ * Polyphase resampler between two integer sample rates. The ratio is reduced to {@code L/M};
+ * conceptually the input is zero-stuffed by {@code L}, low-passed below the lower of the two
+ * Nyquist rates and kept every {@code M}th sample, but each output only evaluates the one
+ * phase of the filter that lands on real input, {@link #ZERO_CROSSINGS} zero crossings either
+ * side, so the cost is a fixed number of multiplies per output sample whatever the ratio.
+ * <p>
+ * The filter is centred: output {@code n} is the input at time {@code n * M / L}, so positions
+ * scale exactly between the two rates. An instance streams, carrying its history across
+ * calls; {@link #finish} flushes the last outputs once the input has ended.
+ */
+public class Resampler {
+    private static final int ZERO_CROSSINGS = 16;
+    /** Cutoff as a fraction of the lower Nyquist rate, leaving room for the transition band. */
+    private static final double PASSBAND = 0.85;
+    private static final int BLOCK = 1 << 16;
+
+    private final int up;
+    private final int down;
+    private final int taps;
+    /** Phase {@code p} of the filter at [p * taps, (p + 1) * taps), newest input first. */
+    private final double[] phases;
+    private double[] buffer;
+    private int next;
+    private int phase;
+    private long consumed;
+    private long produced;
+
+    public Resampler(int inputRate, int outputRate) {
+        if (inputRate < 1 || outputRate < 1) {
+            throw new IllegalArgumentException("Sample rates must be positive: " + inputRate + " -> " + outputRate);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        up = outputRate / gcd;
+        down = inputRate / gcd;
+
+        // Below unity the cutoff drops to the output's Nyquist rate and the filter widens to match.
+        double stretch = Math.max(1.0, (double) down / up);
+        taps = 2 * (int) Math.ceil(ZERO_CROSSINGS * stretch);
+        int length = up * taps;
+        double cutoff = PASSBAND * 0.5 / (up * stretch);
+        int centre = (length - 1) / 2;
+
+        // Symmetric about the whole tap the clock below is aligned to; the even length leaves
+        // the last tap outside the window, at zero.
+        double[] prototype = new double[length];
+        double sum = 0;
+        for (int k = 0; k <= 2 * centre; k++) {
+            double t = k - centre;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double x = Math.PI * k / centre;
+            double blackman = 0.42 - 0.5 * Math.cos(x) + 0.08 * Math.cos(2 * x);
+            prototype[k] = sinc * blackman;
+            sum += prototype[k];
+        }
+        phases = new double[length];
+        for (int p = 0; p < up; p++) {
+            for (int j = 0; j < taps; j++) {
+                phases[p * taps + j] = prototype[p + j * up] * up / sum;
+            }
+        }
+
+        // Start the clock half a filter late so output 0 lines up with input 0.
+        buffer = new double[2 * taps];
+        next = taps - 1 + centre / up;
+        phase = centre % up;
+    }
+
+    /** Most outputs {@link #process} can produce from {@code length} inputs. */
+    public int maxOutput(int length) {
+        return (int) (((long) length * up + down - 1) / down) + 1;
+    }
+
+    /** Most inputs that can be passed to {@link #process} without producing more than {@code outputs}. */
+    public int maxInput(int outputs) {
+        return Math.max(1, (int) ((long) (outputs - 1) * down / up));
+    }
+
+    /**
+     * Resamples {@code length} more samples of the stream into {@code out}, which needs room for
+     * {@link #maxOutput(int) maxOutput(length)}, and returns how many were written.
+     */
+    public int process(double[] in, int offset, int length, double[] out, int outOffset) {
+        int history = taps - 1;
+        if (buffer.length < history + length) {
+            buffer = Arrays.copyOf(buffer, history + length);
+        }
+        System.arraycopy(in, offset, buffer, history, length);
+        consumed += length;
+
+        int end = history + length;
+        int written = 0;
+        int n = next;
+        int p = phase;
+        while (n < end) {
+            int base = p * taps;
+            double acc = 0;
+            for (int j = 0; j < taps; j++) {
+                acc += phases[base + j] * buffer[n - j];
+            }
+            out[outOffset + written++] = acc;
+            p += down;
+            n += p / up;
+            p %= up;
+        }
+        next = n - length;
+        phase = p;
+        produced += written;
+        System.arraycopy(buffer, length, buffer, 0, history);
+        return written;
+    }
+
+    /** Most outputs {@link #finish} can write. */
+    public int maxFinishOutput() {
+        return maxOutput(taps);
+    }
+
+    /**
+     * Pads the stream with silence until every output up to the end of the input has been
+     * produced, writing them to {@code out}, which needs room for {@link #maxFinishOutput()},
+     * and returns how many.
+     */
+    public int finish(double[] out, int outOffset) {
+        long total = (consumed * up + down - 1) / down;
+        // The filter looks less than a full span ahead, so one span of silence is always enough.
+        int written = process(new double[taps], 0, taps, out, outOffset);
+        written -= (int) (produced - total);
+        produced = total;
+        return written;
+    }
+
+    /** Resamples a whole recording, a block at a time so only the output is allocated whole. */
+    public static double[] resample(double[] in, int inputRate, int outputRate) {
+        Resampler resampler = new Resampler(inputRate, outputRate);
+        double[] out = new double[resampler.maxOutput(in.length) + resampler.maxFinishOutput()];
+        int n = 0;
+        for (int i = 0; i < in.length; i += BLOCK) {
+            n += resampler.process(in, i, Math.min(BLOCK, in.length - i), out, n);
+        }
+        n += resampler.finish(out, n);
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Single-precision version of {@link #resample(double[], int, int)}. */
+    public static float[] resample(float[] in, int inputRate, int outputRate) {
+        Resampler resampler = new Resampler(inputRate, outputRate);
+        double[] wide = new double[BLOCK];
+        double[] narrow = new double[Math.max(resampler.maxOutput(BLOCK), resampler.maxFinishOutput())];
+        float[] out = new float[resampler.maxOutput(in.length) + resampler.maxFinishOutput()];
+        int n = 0;
+        for (int i = 0; i < in.length; i += BLOCK) {
+            int length = Math.min(BLOCK, in.length - i);
+            for (int k = 0; k < length; k++) {
+                wide[k] = in[i + k];
+            }
+            n = narrow(narrow, resampler.process(wide, 0, length, narrow, 0), out, n);
+        }
+        n = narrow(narrow, resampler.finish(narrow, 0), out, n);
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int narrow(double[] block, int count, float[] out, int offset) {
+        for (int k = 0; k < count; k++) {
+            out[offset + k] = (float) block[k];
+        }
+        return offset + count;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
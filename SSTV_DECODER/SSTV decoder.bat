@@ -1,20 +1,20 @@
 @echo off
 echo Compiling Java SSTV Decoder...
-javac -cp ".;commons-math3-3.6.1.jar" Main.java
+javac -cp "." -sourcepath ".;..\SSTV_MODES" Main.java
 
 if %ERRORLEVEL% NEQ 0 (
-    echo Compilation failed! Make sure commons-math3-3.6.1.jar is in the current directory.
+    echo Compilation failed! Check the error messages above.
     pause
     exit /b
 )
 
 echo Running SSTV Decoder...
-java -cp ".;commons-math3-3.6.1.jar" Main
+java -cp ".;..\SSTV_MODES" Main
 
 if %ERRORLEVEL% NEQ 0 (
     echo Execution failed! Check the error messages above.
 ) else (
-    echo SSTV decoding completed. Check decoded_sstv.png for the result.
+    echo SSTV decoding completed. Decoded images are saved to the output directory set in Settings.
 )
 
 pause
\ No newline at end of file
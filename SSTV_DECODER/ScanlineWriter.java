@@ -0,0 +1,117 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+/**
+ * Copies decoded lines into a grayscale image through a reused line buffer, one raster call
+ * per line, instead of converting every pixel through the image's color model.
+ * <p>
+ * {@code setRGB} on a {@code TYPE_BYTE_GRAY} image stores each sRGB gray level in the image's
+ * linear gray space. The lookup tables here are taken from that conversion once, so the
+ * stored bytes, and so the saved files, are the same as before.
+ */
+public class ScanlineWriter implements LineScanner.LineListener {
+    private static final byte[] GRAY_TO_RASTER = new byte[256];
+    private static final boolean[] RASTER_IS_WHITE = new boolean[256];
+
+    static {
+        BufferedImage probe = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for (int v = 0; v < 256; v++) {
+            probe.setRGB(v, 0, 0xFF000000 | v * 0x010101);
+        }
+        byte[] stored = ((DataBufferByte) probe.getRaster().getDataBuffer()).getData();
+        System.arraycopy(stored, 0, GRAY_TO_RASTER, 0, 256);
+
+        for (int b = 0; b < 256; b++) {
+            stored[b] = (byte) b;
+        }
+        for (int b = 0; b < 256; b++) {
+            RASTER_IS_WHITE[b] = brightness(probe.getRGB(b, 0)) == 255;
+        }
+    }
+
+    private final BufferedImage image;
+    private final WritableRaster raster;
+    private final byte[] line;
+
+    public ScanlineWriter(BufferedImage image) {
+        this.image = image;
+        this.raster = image.getRaster();
+        this.line = new byte[image.getWidth()];
+    }
+
+    @Override
+    public void lineDecoded(int y, int[] pixels, int count) {
+        if (y < 0 || y >= image.getHeight()) {
+            return;
+        }
+        int width = Math.min(count, line.length);
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | pixels[x] * 0x010101);
+            }
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            line[x] = GRAY_TO_RASTER[pixels[x]];
+        }
+        raster.setDataElements(0, y, width, 1, line);
+    }
+
+    /**
+     * Crops {@code img} to the bounding box of pixels that are not pure white, or returns it
+     * unchanged if every pixel is white. Grayscale images are scanned row by row straight
+     * from their raster.
+     */
+    static BufferedImage cropImage(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            WritableRaster raster = img.getRaster();
+            byte[] row = new byte[width];
+            for (int y = 0; y < height; y++) {
+                raster.getDataElements(0, y, width, 1, row);
+                int first = 0;
+                while (first < width && RASTER_IS_WHITE[row[first] & 0xFF]) {
+                    first++;
+                }
+                if (first == width) {
+                    continue;
+                }
+                int last = width - 1;
+                while (RASTER_IS_WHITE[row[last] & 0xFF]) {
+                    last--;
+                }
+                minX = Math.min(minX, first);
+                maxX = Math.max(maxX, last);
+                minY = Math.min(minY, y);
+                maxY = y;
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (brightness(img.getRGB(x, y)) < 255) {
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = y;
+                    }
+                }
+            }
+        }
+
+        if (maxY < 0) {
+            return img;
+        }
+        return img.getSubimage(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    private static int brightness(int rgb) {
+        return (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3;
+    }
+}
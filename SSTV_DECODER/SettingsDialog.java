@@ -13,6 +13,16 @@ public class SettingsDialog extends JDialog {
     private String outputDirectory = ".";
     private String outputFormat = "png";
     private boolean showGrid = true;
+    private boolean colorDecode = true;
+    private boolean streamingDecode = false;
+    private int blockSize = 4096;
+    private LowPassFilter.Type smoothingFilter = LowPassFilter.Type.BOXCAR;
+    private int smoothingWindow = 5;
+    private boolean autoDetectMode = true;
+    private boolean singlePrecision = false;
+    private int channel = 0;
+    private int workingSampleRate = 0;
+    private boolean decimatingFrontEnd = false;
     
     
     private JTextField widthField;
@@ -22,6 +32,16 @@ public class SettingsDialog extends JDialog {
     private JTextField outputDirField;
     private JComboBox<String> formatComboBox;
     private JCheckBox showGridCheckbox;
+    private JCheckBox colorCheckbox;
+    private JCheckBox streamingCheckbox;
+    private JTextField blockSizeField;
+    private JComboBox<LowPassFilter.Type> smoothingFilterComboBox;
+    private JTextField smoothingWindowField;
+    private JCheckBox autoDetectCheckbox;
+    private JCheckBox singlePrecisionCheckbox;
+    private JTextField channelField;
+    private JTextField workingRateField;
+    private JCheckBox frontEndCheckbox;
     
     private boolean settingsChanged = false;
     
@@ -67,6 +87,14 @@ public class SettingsDialog extends JDialog {
         showGridCheckbox = new JCheckBox();
         imagePanel.add(showGridCheckbox, gbc);
         
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        imagePanel.add(new JLabel("Color:"), gbc);
+        gbc.gridx = 1;
+        colorCheckbox = new JCheckBox();
+        colorCheckbox.setToolTipText("Decode in colour at the size the detected mode sends; width and height apply to grayscale decoding");
+        imagePanel.add(colorCheckbox, gbc);
+        
         
         JPanel freqPanel = new JPanel(new GridBagLayout());
         freqPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -117,9 +145,89 @@ public class SettingsDialog extends JDialog {
         outputPanel.add(formatComboBox, gbc);
         
         
+        JPanel processingPanel = new JPanel(new GridBagLayout());
+        processingPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        
+        processingPanel.add(new JLabel("Streaming Decode:"), gbc);
+        gbc.gridx = 1;
+        streamingCheckbox = new JCheckBox();
+        streamingCheckbox.setToolTipText("Decode in fixed-size blocks; memory use does not grow with file length");
+        processingPanel.add(streamingCheckbox, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        processingPanel.add(new JLabel("Block Size (samples):"), gbc);
+        gbc.gridx = 1;
+        blockSizeField = new JTextField(8);
+        processingPanel.add(blockSizeField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        processingPanel.add(new JLabel("Smoothing Filter:"), gbc);
+        gbc.gridx = 1;
+        smoothingFilterComboBox = new JComboBox<>(LowPassFilter.Type.values());
+        smoothingFilterComboBox.setToolTipText("Boxcar is cheapest; FIR and biquad roll off more sharply");
+        processingPanel.add(smoothingFilterComboBox, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        processingPanel.add(new JLabel("Smoothing Window (samples):"), gbc);
+        gbc.gridx = 1;
+        smoothingWindowField = new JTextField(8);
+        smoothingWindowField.setToolTipText("Wider windows reject more noise but blur pixel edges");
+        processingPanel.add(smoothingWindowField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        processingPanel.add(new JLabel("Detect Mode (VIS):"), gbc);
+        gbc.gridx = 1;
+        autoDetectCheckbox = new JCheckBox();
+        autoDetectCheckbox.setToolTipText("Read the mode from the header tones; batch decoding skips files without one");
+        processingPanel.add(autoDetectCheckbox, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        processingPanel.add(new JLabel("Single Precision:"), gbc);
+        gbc.gridx = 1;
+        singlePrecisionCheckbox = new JCheckBox();
+        singlePrecisionCheckbox.setToolTipText("Whole-file decode in float instead of double; half the memory for long recordings");
+        processingPanel.add(singlePrecisionCheckbox, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        processingPanel.add(new JLabel("Channel:"), gbc);
+        gbc.gridx = 1;
+        channelField = new JTextField(8);
+        channelField.setToolTipText("Channel to decode, counting from 0, or \"mix\" to average all channels");
+        processingPanel.add(channelField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        processingPanel.add(new JLabel("Working Rate (Hz):"), gbc);
+        gbc.gridx = 1;
+        workingRateField = new JTextField(8);
+        workingRateField.setToolTipText("Resample to this rate before demodulating; 0 keeps the recorded rate");
+        processingPanel.add(workingRateField, gbc);
+        
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        processingPanel.add(new JLabel("Baseband Front End:"), gbc);
+        gbc.gridx = 1;
+        frontEndCheckbox = new JCheckBox();
+        frontEndCheckbox.setToolTipText("Mix down and decimate to about 11 kHz before demodulating; several times less work per file");
+        processingPanel.add(frontEndCheckbox, gbc);
+        
+        
         tabbedPane.addTab("Image", imagePanel);
         tabbedPane.addTab("Frequency", freqPanel);
         tabbedPane.addTab("Output", outputPanel);
+        tabbedPane.addTab("Processing", processingPanel);
         
         
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -143,9 +251,10 @@ public class SettingsDialog extends JDialog {
         add(buttonPanel, BorderLayout.SOUTH);
         
         
-        setSize(400, 300);
-        setLocationRelativeTo(getOwner());
+        // Sized to the tallest tab, so adding a row to one never clips it.
         setResizable(false);
+        pack();
+        setLocationRelativeTo(getOwner());
     }
     
     private void loadSettings() {
@@ -156,6 +265,16 @@ public class SettingsDialog extends JDialog {
         outputDirField.setText(outputDirectory);
         formatComboBox.setSelectedItem(outputFormat);
         showGridCheckbox.setSelected(showGrid);
+        colorCheckbox.setSelected(colorDecode);
+        streamingCheckbox.setSelected(streamingDecode);
+        blockSizeField.setText(String.valueOf(blockSize));
+        smoothingFilterComboBox.setSelectedItem(smoothingFilter);
+        smoothingWindowField.setText(String.valueOf(smoothingWindow));
+        autoDetectCheckbox.setSelected(autoDetectMode);
+        singlePrecisionCheckbox.setSelected(singlePrecision);
+        channelField.setText(channel == PcmConverter.DOWNMIX ? "mix" : String.valueOf(channel));
+        workingRateField.setText(String.valueOf(workingSampleRate));
+        frontEndCheckbox.setSelected(decimatingFrontEnd);
     }
     
     private boolean saveSettings() {
@@ -164,6 +283,11 @@ public class SettingsDialog extends JDialog {
             int height = Integer.parseInt(heightField.getText().trim());
             double blackF = Double.parseDouble(blackFreqField.getText().trim());
             double whiteF = Double.parseDouble(whiteFreqField.getText().trim());
+            int block = Integer.parseInt(blockSizeField.getText().trim());
+            int window = Integer.parseInt(smoothingWindowField.getText().trim());
+            String channelText = channelField.getText().trim();
+            int selectedChannel = channelText.equalsIgnoreCase("mix") ? PcmConverter.DOWNMIX : Integer.parseInt(channelText);
+            int rate = Integer.parseInt(workingRateField.getText().trim());
             
             if (width <= 0 || height <= 0) {
                 JOptionPane.showMessageDialog(this, 
@@ -179,6 +303,34 @@ public class SettingsDialog extends JDialog {
                 return false;
             }
             
+            if (block < 256) {
+                JOptionPane.showMessageDialog(this, 
+                    "Block size must be at least 256 samples.", 
+                    "Invalid Settings", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            
+            if (window < 1 || window > 1024) {
+                JOptionPane.showMessageDialog(this, 
+                    "Smoothing window must be between 1 and 1024 samples.", 
+                    "Invalid Settings", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            
+            if (selectedChannel < PcmConverter.DOWNMIX) {
+                JOptionPane.showMessageDialog(this, 
+                    "Channel must be 0 or more, or \"mix\".", 
+                    "Invalid Settings", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            
+            if (rate != 0 && (rate < 6000 || rate > 384000)) {
+                JOptionPane.showMessageDialog(this, 
+                    "Working rate must be 0 or between 6000 and 384000 Hz.", 
+                    "Invalid Settings", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            
             imageWidth = width;
             imageHeight = height;
             blackFreq = blackF;
@@ -186,6 +338,16 @@ public class SettingsDialog extends JDialog {
             outputDirectory = outputDirField.getText().trim();
             outputFormat = (String) formatComboBox.getSelectedItem();
             showGrid = showGridCheckbox.isSelected();
+            colorDecode = colorCheckbox.isSelected();
+            streamingDecode = streamingCheckbox.isSelected();
+            blockSize = block;
+            smoothingFilter = (LowPassFilter.Type) smoothingFilterComboBox.getSelectedItem();
+            smoothingWindow = window;
+            autoDetectMode = autoDetectCheckbox.isSelected();
+            singlePrecision = singlePrecisionCheckbox.isSelected();
+            channel = selectedChannel;
+            workingSampleRate = rate;
+            decimatingFrontEnd = frontEndCheckbox.isSelected();
             
             return true;
         } catch (NumberFormatException e) {
@@ -236,6 +398,46 @@ public class SettingsDialog extends JDialog {
         return showGrid;
     }
     
+    public boolean isColorDecode() {
+        return colorDecode;
+    }
+    
+    public boolean isStreamingDecode() {
+        return streamingDecode;
+    }
+    
+    public int getBlockSize() {
+        return blockSize;
+    }
+    
+    public LowPassFilter.Type getSmoothingFilter() {
+        return smoothingFilter;
+    }
+    
+    public int getSmoothingWindow() {
+        return smoothingWindow;
+    }
+    
+    public boolean isAutoDetectMode() {
+        return autoDetectMode;
+    }
+    
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+    
+    public int getChannel() {
+        return channel;
+    }
+    
+    public int getWorkingSampleRate() {
+        return workingSampleRate;
+    }
+    
+    public boolean isDecimatingFrontEnd() {
+        return decimatingFrontEnd;
+    }
+    
     public boolean isSettingsChanged() {
         return settingsChanged;
     }
@@ -0,0 +1,90 @@
+/**
+ * Least-squares line through the sync positions of one transmission, {@code position = origin
+ * + period * row}. A sound card whose clock is off by a few ppm stretches every line by the same
+ * amount, so the slope measures the true line period and, through it, the true sample rate.
+ * Lines are placed on the fitted line rather than on their own detected edge, which also takes
+ * out the jitter of individual sync detections.
+ * <p>
+ * The fit is kept as running sums and updated once per line. Once it has enough lines, a
+ * position too far from the line is treated as a false sync and left out of the fit.
+ */
+public class SlantCorrector {
+    private static final int MIN_LINES = 8;
+
+    private final double nominalPeriod;
+    private final double sampleRate;
+    private final double tolerance;
+
+    private int count;
+    private int firstRow;
+    private long firstPosition;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private double slope;
+    private double intercept;
+
+    /**
+     * @param nominalPeriod line period in samples at the stated sample rate
+     * @param sampleRate    sample rate the recording claims
+     * @param tolerance     how far, in samples, a sync may lie from the fitted line and still be used
+     */
+    public SlantCorrector(double nominalPeriod, double sampleRate, double tolerance) {
+        this.nominalPeriod = nominalPeriod;
+        this.sampleRate = sampleRate;
+        this.tolerance = tolerance;
+        this.slope = nominalPeriod;
+    }
+
+    /** Adds the sync of {@code row}; returns false if it was rejected as an outlier. */
+    public boolean add(int row, long position) {
+        if (count == 0) {
+            firstRow = row;
+            firstPosition = position;
+        } else if (isReady() && Math.abs(position - positionOf(row)) > tolerance) {
+            return false;
+        }
+
+        // Relative to the first sync, so the sums stay small enough to square exactly.
+        double x = row - firstRow;
+        double y = position - firstPosition;
+        count++;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+
+        double denominator = count * sumXX - sumX * sumX;
+        if (denominator > 0) {
+            slope = (count * sumXY - sumX * sumY) / denominator;
+            intercept = (sumY - slope * sumX) / count;
+        }
+        return true;
+    }
+
+    /** True once enough lines have been added for the fit to be trusted. */
+    public boolean isReady() {
+        return count >= MIN_LINES;
+    }
+
+    /** Fitted position of the sync of {@code row}, in samples. */
+    public double positionOf(int row) {
+        return firstPosition + intercept + slope * (row - firstRow);
+    }
+
+    /** Fitted line period in samples, or the nominal period until the fit is ready. */
+    public double period() {
+        return isReady() ? slope : nominalPeriod;
+    }
+
+    /** Sample rate implied by the fitted line period. */
+    public double estimatedSampleRate() {
+        return sampleRate * period() / nominalPeriod;
+    }
+
+    /** Clock error of the recording in parts per million. */
+    public double ppm() {
+        return (period() / nominalPeriod - 1) * 1e6;
+    }
+}
@@ -0,0 +1,512 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntSupplier;
+
+/**
+ * Decodes one SSTV recording into an image. All configuration is copied at construction and
+ * all working state lives on the stack of {@link #decode}, so a single instance may be used
+ * from several threads, and several instances can run side by side.
+ */
+public class SstvDecoder {
+    private static final int PROGRESS_CHUNK = 1000;
+    private static final int READ_FRAMES = 1 << 16;
+
+    /** Callbacks from a running decode; every method has a no-op default. */
+    public interface Listener {
+        Listener NONE = new Listener() {
+        };
+
+        default void imageStarted(BufferedImage image) {
+        }
+
+        default void waveformLoaded(double[] samples) {
+        }
+
+        /** Called instead of the {@code double[]} version by a single-precision decode. */
+        default void waveformLoaded(float[] samples) {
+        }
+
+        /** {@code rowsDecoded} counts image rows, which is more than lines for modes sending two rows a line. */
+        default void progressUpdated(double progress, long position, int rowsDecoded) {
+        }
+
+        default void log(String message) {
+        }
+
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    public static class Result {
+        private final BufferedImage image;
+        private final int lineCount;
+        private final long sampleCount;
+        private final int sampleRate;
+        private final double estimatedSampleRate;
+
+        Result(BufferedImage image, int lineCount, long sampleCount, int sampleRate, double estimatedSampleRate) {
+            this.image = image;
+            this.lineCount = lineCount;
+            this.sampleCount = sampleCount;
+            this.sampleRate = sampleRate;
+            this.estimatedSampleRate = estimatedSampleRate;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        /** Number of demodulated samples, or -1 when the file was streamed. */
+        public long getSampleCount() {
+            return sampleCount;
+        }
+
+        /** Sample rate stated in the file header. */
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        /**
+         * Sample rate measured from the spacing of the sync pulses, or the stated rate if there
+         * were too few lines to measure it.
+         */
+        public double getEstimatedSampleRate() {
+            return estimatedSampleRate;
+        }
+    }
+
+    private final DecoderSettings settings;
+
+    public SstvDecoder(DecoderSettings settings) {
+        this.settings = settings.copy();
+    }
+
+    public DecoderSettings getSettings() {
+        return settings.copy();
+    }
+
+    /**
+     * Reads the VIS header from the first {@link VisDecoder#SEARCH_SECONDS} of {@code file},
+     * returning {@code null} if there is none. Only that much audio is read, so this is a cheap
+     * way to tell an SSTV recording from anything else.
+     */
+    public VisDecoder.Header detectMode(File file) throws IOException, UnsupportedAudioFileException {
+        int fileRate = sampleRateOf(file);
+        int sampleRate = workingRate(fileRate);
+        VisDecoder vis = new VisDecoder(sampleRate);
+        double[] head = readHead(file, (int) Math.ceil((double) vis.searchLength() * fileRate / sampleRate), settings.getChannel());
+        if (sampleRate != fileRate) {
+            head = Resampler.resample(head, fileRate, sampleRate);
+        }
+        return vis.detect(head, Math.min(head.length, vis.searchLength()));
+    }
+
+    /**
+     * Decodes {@code file}, returning the image (cropped when grayscale), or {@code null} if the listener
+     * cancelled the decode. With mode detection on, the VIS header is read first.
+     */
+    public Result decode(File file, Listener listener) throws IOException, UnsupportedAudioFileException {
+        VisDecoder.Header header = settings.isAutoDetectMode() ? detectMode(file) : null;
+        return decode(file, header, listener);
+    }
+
+    /**
+     * Decodes {@code file} in the mode announced by {@code header}, as returned by
+     * {@link #detectMode}, or with the configured settings if it is {@code null}.
+     */
+    public Result decode(File file, VisDecoder.Header header, Listener listener)
+            throws IOException, UnsupportedAudioFileException {
+        int imageWidth = settings.getImageWidth();
+        int imageHeight = settings.getImageHeight();
+        double blackFreq = settings.getBlackFreq();
+        double whiteFreq = settings.getWhiteFreq();
+        int fileRate = sampleRateOf(file);
+        int sampleRate = workingRate(fileRate);
+        int channel = settings.getChannel();
+        if (sampleRate != fileRate) {
+            listener.log("Resampling from " + fileRate + " Hz to " + sampleRate + " Hz");
+        }
+        // The front end demodulates at a fraction of the rate, and the line timing follows it.
+        boolean frontEnd = settings.isDecimatingFrontEnd();
+        int decimation = frontEnd ? BasebandDemodulator.factorFor(sampleRate) : 1;
+        int demodRate = sampleRate / decimation;
+        int smoothingWindow = BasebandDemodulator.scaleWindow(settings.getSmoothingWindow(), decimation);
+        if (frontEnd) {
+            listener.log("Demodulating at baseband, " + demodRate + " Hz");
+        }
+
+        SstvMode mode = SstvMode.ROBOT_36;
+        if (header != null) {
+            mode = SstvMode.forVisCode(header.getCode());
+            if (mode == null) {
+                throw new UnsupportedAudioFileException("Unsupported SSTV mode: " + header);
+            }
+            listener.log(String.format(Locale.ROOT, "Detected %s at %.2f s", header, (double) header.getStart() / sampleRate));
+        } else if (settings.isAutoDetectMode()) {
+            listener.log("No VIS header found; decoding with the configured settings");
+        }
+
+        SstvMode.Timing timing = mode.timing(demodRate);
+        boolean color = settings.isColorDecode();
+        BufferedImage image = color ? ModeSampler.createImage(mode)
+                : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_BYTE_GRAY);
+        listener.imageStarted(image);
+
+        LineScanner scanner;
+        IntSupplier linesDecoded;
+        IntSupplier rowsDecoded;
+        SlantCorrector slant = null;
+        if (color) {
+            ModeSampler sampler = new ModeSampler(timing, decimation, image, blackFreq, whiteFreq);
+            if (header != null) {
+                sampler.setStart(header.getEnd() / decimation);
+            }
+            scanner = new LineScanner(sampler, timing);
+            linesDecoded = sampler::getLinesDecoded;
+            int rowsPerLine = mode.getRowsPerLine();
+            rowsDecoded = () -> sampler.getLinesDecoded() * rowsPerLine;
+            slant = sampler.getSlant();
+        } else {
+            scanner = new LineScanner(timing, imageWidth, imageHeight, blackFreq, whiteFreq, new ScanlineWriter(image));
+            linesDecoded = scanner::getLineCount;
+            rowsDecoded = linesDecoded;
+        }
+        if (header != null) {
+            // Everything before the start bit is leader; the first sync ends the VIS stop bit.
+            scanner.skipTo(header.getStart() / decimation);
+        }
+
+        long sampleCount;
+
+        if (settings.isStreamingDecode()) {
+            listener.log("Streaming decode, block size " + settings.getBlockSize() + " samples");
+
+            StreamingDecoder decoder = new StreamingDecoder(settings.getBlockSize(), settings.getSmoothingFilter(),
+                    settings.getSmoothingWindow());
+            decoder.setChannel(channel);
+            decoder.setWorkingSampleRate(sampleRate);
+            decoder.setDecimatingFrontEnd(frontEnd);
+            decoder.setProgressListener((framesRead, totalFrames, currentLine) -> {
+                if (listener.isCancelled()) {
+                    decoder.cancel();
+                }
+                double progress = totalFrames > 0 ? (double) framesRead / totalFrames : 0;
+                listener.progressUpdated(progress, framesRead, rowsDecoded.getAsInt());
+            });
+
+            if (WavFile.isWav(file)) {
+                try (WavFile wav = WavFile.open(file)) {
+                    logChannels(wav.getFormat().getChannels(), channel, listener);
+                    decoder.decode(wav, scanner, fileRate);
+                }
+            } else {
+                try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file)) {
+                    logChannels(audioInputStream.getFormat().getChannels(), channel, listener);
+                    decoder.decode(audioInputStream, scanner, fileRate);
+                }
+            }
+            if (decoder.isCancelled()) {
+                return null;
+            }
+            sampleCount = -1;
+        } else if (settings.isSinglePrecision()) {
+            float[] audio = readMonoFloat(file, channel, listener);
+            if (sampleRate != fileRate) {
+                audio = Resampler.resample(audio, fileRate, sampleRate);
+            }
+            listener.waveformLoaded(audio);
+
+            float[] smoothedFrequency = frontEnd ? BasebandDemodulator.demodulate(audio, sampleRate, decimation)
+                    : calculateInstantaneousFrequency(audio, sampleRate);
+            LowPassFilter.apply(settings.getSmoothingFilter(), smoothingWindow,
+                    smoothedFrequency, smoothedFrequency);
+
+            // The scanner works in double; widen one chunk at a time so only the chunk is copied.
+            double[] chunk = new double[PROGRESS_CHUNK];
+            for (int i = 0; i < smoothedFrequency.length; i += PROGRESS_CHUNK) {
+                if (listener.isCancelled()) {
+                    return null;
+                }
+
+                int length = Math.min(PROGRESS_CHUNK, smoothedFrequency.length - i);
+                for (int k = 0; k < length; k++) {
+                    chunk[k] = smoothedFrequency[i + k];
+                }
+                scanner.process(chunk, 0, length);
+
+                double progress = Math.min(1.0, (double) i / (smoothedFrequency.length - 2800));
+                listener.progressUpdated(progress, (long) i * decimation, rowsDecoded.getAsInt());
+            }
+            scanner.finish();
+
+            sampleCount = smoothedFrequency.length;
+        } else {
+            double[] audio = readMono(file, channel, listener);
+            if (sampleRate != fileRate) {
+                audio = Resampler.resample(audio, fileRate, sampleRate);
+            }
+            listener.waveformLoaded(audio);
+
+            double[] smoothedFrequency = frontEnd ? BasebandDemodulator.demodulate(audio, sampleRate, decimation)
+                    : calculateInstantaneousFrequency(audio, sampleRate);
+            LowPassFilter.apply(settings.getSmoothingFilter(), smoothingWindow,
+                    smoothedFrequency, smoothedFrequency);
+
+            for (int i = 0; i < smoothedFrequency.length; i += PROGRESS_CHUNK) {
+                if (listener.isCancelled()) {
+                    return null;
+                }
+
+                scanner.process(smoothedFrequency, i, Math.min(PROGRESS_CHUNK, smoothedFrequency.length - i));
+
+                double progress = Math.min(1.0, (double) i / (smoothedFrequency.length - 2800));
+                listener.progressUpdated(progress, (long) i * decimation, rowsDecoded.getAsInt());
+            }
+            scanner.finish();
+
+            sampleCount = smoothedFrequency.length;
+        }
+
+        if (listener.isCancelled()) {
+            return null;
+        }
+
+        double estimatedSampleRate = fileRate;
+        if (slant != null && slant.isReady()) {
+            // The slant is measured at the demodulation rate; the clock error is the same at the file's.
+            estimatedSampleRate = slant.estimatedSampleRate() * fileRate / demodRate;
+            listener.log(String.format(Locale.ROOT, "Sample rate %.1f Hz measured from line timing (%+.0f ppm)",
+                    estimatedSampleRate, slant.ppm()));
+        }
+
+        int lineCount = linesDecoded.getAsInt();
+        return new Result(color ? image : ScanlineWriter.cropImage(image), lineCount, sampleCount,
+                fileRate, estimatedSampleRate);
+    }
+
+    /** Rate the decode runs at for a recording made at {@code fileRate}. */
+    private int workingRate(int fileRate) {
+        int rate = settings.getWorkingSampleRate();
+        return rate > 0 ? rate : fileRate;
+    }
+
+    private static void logChannels(int channels, int channel, Listener listener) throws UnsupportedAudioFileException {
+        if (channel >= channels) {
+            throw new UnsupportedAudioFileException("No channel " + channel + " in a " + channels + "-channel recording");
+        }
+        if (channels > 1) {
+            listener.log(channel == PcmConverter.DOWNMIX ? "Mixing " + channels + " channels to mono..."
+                    : "Decoding channel " + channel + " of " + channels);
+        }
+    }
+
+    /** Sample rate stated in the header of {@code file}, rounded to whole hertz. */
+    private static int sampleRateOf(File file) throws IOException, UnsupportedAudioFileException {
+        if (WavFile.isWav(file)) {
+            try (WavFile wav = WavFile.open(file)) {
+                return Math.round(wav.getFormat().getSampleRate());
+            }
+        }
+        return Math.round(AudioSystem.getAudioFileFormat(file).getFormat().getSampleRate());
+    }
+
+    /** Up to {@code frames} frames of {@code channel} from the start of {@code file}. */
+    private static double[] readHead(File file, int frames, int channel) throws IOException, UnsupportedAudioFileException {
+        if (WavFile.isWav(file)) {
+            try (WavFile wav = WavFile.open(file)) {
+                logChannels(wav.getFormat().getChannels(), channel, Listener.NONE);
+                double[] head = new double[(int) Math.min(frames, wav.getFrameLength())];
+                wav.read(0, channel, head, 0, head.length);
+                return head;
+            }
+        }
+
+        try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file)) {
+            PcmConverter converter = new PcmConverter(audioInputStream.getFormat());
+            logChannels(converter.getChannels(), channel, Listener.NONE);
+            byte[] bytes = audioInputStream.readNBytes(frames * converter.getFrameSize());
+            double[] head = new double[bytes.length / converter.getFrameSize()];
+            converter.convert(ByteBuffer.wrap(bytes), 0, head.length, channel, head, 0);
+            return head;
+        }
+    }
+
+    /**
+     * Loads {@code channel} of {@code file}, or all channels mixed, onto the heap. WAV files are
+     * converted straight out of a memory mapping; anything else goes through {@link AudioSystem}.
+     */
+    private static double[] readMono(File file, int channel, Listener listener)
+            throws IOException, UnsupportedAudioFileException {
+        if (WavFile.isWav(file)) {
+            try (WavFile wav = WavFile.open(file)) {
+                if (wav.getFrameLength() > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Recording is too long to decode whole; enable streaming decode");
+                }
+                logChannels(wav.getFormat().getChannels(), channel, listener);
+                double[] audio = new double[(int) wav.getFrameLength()];
+                wav.read(0, channel, audio, 0, audio.length);
+                return audio;
+            }
+        }
+
+        try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file)) {
+            PcmConverter converter = new PcmConverter(audioInputStream.getFormat());
+            logChannels(converter.getChannels(), channel, listener);
+            byte[] audioBytes = audioInputStream.readAllBytes();
+            double[] audio = new double[audioBytes.length / converter.getFrameSize()];
+            converter.convert(ByteBuffer.wrap(audioBytes), 0, audio.length, channel, audio, 0);
+            return audio;
+        }
+    }
+
+    /**
+     * Single-precision version of {@link #readMono}. Other formats are converted a block at a
+     * time rather than from one byte array holding the whole file.
+     */
+    private static float[] readMonoFloat(File file, int channel, Listener listener)
+            throws IOException, UnsupportedAudioFileException {
+        if (WavFile.isWav(file)) {
+            try (WavFile wav = WavFile.open(file)) {
+                if (wav.getFrameLength() > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Recording is too long to decode whole; enable streaming decode");
+                }
+                logChannels(wav.getFormat().getChannels(), channel, listener);
+                float[] audio = new float[(int) wav.getFrameLength()];
+                wav.read(0, channel, audio, 0, audio.length);
+                return audio;
+            }
+        }
+
+        try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file)) {
+            PcmConverter converter = new PcmConverter(audioInputStream.getFormat());
+            logChannels(converter.getChannels(), channel, listener);
+            byte[] bytes = new byte[READ_FRAMES * converter.getFrameSize()];
+            ByteBuffer block = ByteBuffer.wrap(bytes);
+            long frameLength = audioInputStream.getFrameLength();
+            float[] audio = new float[frameLength > 0 && frameLength < Integer.MAX_VALUE - 8
+                    ? (int) frameLength : READ_FRAMES];
+            int count = 0;
+            int read;
+            while ((read = audioInputStream.readNBytes(bytes, 0, bytes.length)) > 0) {
+                int frames = read / converter.getFrameSize();
+                if (count + frames > audio.length) {
+                    audio = Arrays.copyOf(audio, Math.max(count + frames, 2 * audio.length));
+                }
+                converter.convert(block, 0, frames, channel, audio, count);
+                count += frames;
+            }
+            return count == audio.length ? audio : Arrays.copyOf(audio, count);
+        }
+    }
+
+    /** Output file for the image decoded from {@code audioFile}, in the configured directory and format. */
+    public File outputFileFor(File audioFile) {
+        String name = audioFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(settings.getOutputDirectory(), base + "." + settings.getOutputFormat());
+    }
+
+    /** Every sample of {@code audioBytes}, channels interleaved as in the input. */
+    static double[] bytesToSamples(byte[] audioBytes, AudioFormat format) {
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        double[] samples = new double[audioBytes.length / bytesPerSample];
+        bytesToSamples(audioBytes, audioBytes.length, format, samples);
+        return samples;
+    }
+
+    /**
+     * Converts the first {@code length} bytes of {@code audioBytes} into {@code samples}, channels
+     * interleaved, and returns how many samples that was.
+     */
+    static int bytesToSamples(byte[] audioBytes, int length, AudioFormat format, double[] samples) {
+        int numSamples = length / (format.getSampleSizeInBits() / 8);
+        try {
+            PcmConverter.interleaved(format).convert(ByteBuffer.wrap(audioBytes), 0, numSamples, 0, samples, 0);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return numSamples;
+    }
+
+    
+    /**
+     * Frequency between each pair of consecutive analytic samples, from the conjugate-product
+     * discriminator arg(z[n + 1] * conj(z[n])). Its angle is already the wrapped phase step, so
+     * one pass over the analytic signal gives the result, with no phase or unwrapped-phase arrays.
+     */
+    static double[] calculateInstantaneousFrequency(double[] signal, int sampleRate) {
+        
+        int paddedLength = nextPowerOfTwo(signal.length);
+        Fft fft = new Fft(paddedLength);
+        double[] analyticRe = new double[paddedLength];
+        double[] analyticIm = new double[paddedLength];
+
+        
+        Hilbert.analyticSignal(signal, fft, analyticRe, analyticIm);
+
+        
+        double scale = sampleRate / (2.0 * Math.PI);
+        double[] instFreq = new double[signal.length - 1];
+        double previousRe = analyticRe[0];
+        double previousIm = analyticIm[0];
+        for (int i = 0; i < instFreq.length; i++) {
+            double re = analyticRe[i + 1];
+            double im = analyticIm[i + 1];
+            instFreq[i] = Math.atan2(im * previousRe - re * previousIm, re * previousRe + im * previousIm) * scale;
+            previousRe = re;
+            previousIm = im;
+        }
+
+        return instFreq;
+    }
+
+    /**
+     * Single-precision version of {@link #calculateInstantaneousFrequency(double[], int)}: the
+     * analytic signal and the result are {@code float[]}, half the memory of the double path.
+     */
+    static float[] calculateInstantaneousFrequency(float[] signal, int sampleRate) {
+        int paddedLength = nextPowerOfTwo(signal.length);
+        FloatFft fft = new FloatFft(paddedLength);
+        float[] analyticRe = new float[paddedLength];
+        float[] analyticIm = new float[paddedLength];
+
+        Hilbert.analyticSignal(signal, fft, analyticRe, analyticIm);
+
+        double scale = sampleRate / (2.0 * Math.PI);
+        float[] instFreq = new float[signal.length - 1];
+        float previousRe = analyticRe[0];
+        float previousIm = analyticIm[0];
+        for (int i = 0; i < instFreq.length; i++) {
+            float re = analyticRe[i + 1];
+            float im = analyticIm[i + 1];
+            instFreq[i] = (float) (Math.atan2(im * previousRe - re * previousIm, re * previousRe + im * previousIm) * scale);
+            previousRe = re;
+            previousIm = im;
+        }
+
+        return instFreq;
+    }
+
+    
+    private static int nextPowerOfTwo(int n) {
+        int power = 1;
+        while (power < n) {
+            power *= 2;
+        }
+        return power;
+    }
+}
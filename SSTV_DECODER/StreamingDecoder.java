@@ -0,0 +1,365 @@
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decodes an SSTV recording in fixed-size blocks instead of loading it whole, so memory
+ * stays constant regardless of file length and lines are reported as soon as they are read.
+ * On multi-core machines reading, demodulation and line scanning run as a pipeline on three threads.
+ */
+public class StreamingDecoder {
+    public interface ProgressListener {
+        void progressUpdated(long framesRead, long totalFrames, int linesDecoded);
+    }
+
+    private final int blockSize;
+    private final LowPassFilter.Type smoothingFilter;
+    private final int smoothingWindow;
+    private ProgressListener progressListener;
+    private boolean pipelined = Runtime.getRuntime().availableProcessors() > 1;
+    private int channel;
+    private int workingSampleRate;
+    private boolean decimatingFrontEnd;
+    private volatile boolean cancelled;
+
+    public StreamingDecoder(int blockSize, LowPassFilter.Type smoothingFilter, int smoothingWindow) {
+        this.blockSize = blockSize;
+        this.smoothingFilter = smoothingFilter;
+        this.smoothingWindow = smoothingWindow;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Whether reading, demodulation and line scanning run on threads of their own. On by default
+     * when there is more than one processor; with only one the stages just take turns.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /** Channel to decode, counting from 0, or {@link PcmConverter#DOWNMIX}; channel 0 by default. */
+    public void setChannel(int channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Rate to resample to before demodulation, or 0, the default, to demodulate at the rate
+     * passed to {@code decode}. Progress is then counted in samples at this rate.
+     */
+    public void setWorkingSampleRate(int workingSampleRate) {
+        this.workingSampleRate = workingSampleRate;
+    }
+
+    /**
+     * Whether to demodulate with a {@link BasebandDemodulator}, which decimates by
+     * {@link BasebandDemodulator#factorFor} the working rate; the scanner's timing must then be
+     * for the reduced rate. Progress is still counted in samples at the working rate.
+     */
+    public void setDecimatingFrontEnd(boolean decimatingFrontEnd) {
+        this.decimatingFrontEnd = decimatingFrontEnd;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Reads the stream to the end (or until cancelled), feeding its frequencies to {@code scanner},
+     * and returns the number of lines found.
+     */
+    public int decode(AudioInputStream in, LineScanner scanner, int sampleRate) throws IOException {
+        PcmConverter converter;
+        try {
+            converter = new PcmConverter(in.getFormat());
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int frameSize = converter.getFrameSize();
+        byte[] bytes = new byte[blockSize * frameSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int[] filled = {0};
+
+        Source source = mono -> {
+            int n;
+            int limit = Math.min(bytes.length, mono.length * frameSize);
+            while ((n = in.read(bytes, filled[0], limit - filled[0])) != -1) {
+                filled[0] += n;
+                int frames = filled[0] / frameSize;
+                if (frames == 0) {
+                    continue;
+                }
+
+                int usedBytes = frames * frameSize;
+                converter.convert(buffer, 0, frames, channel, mono, 0);
+                System.arraycopy(bytes, usedBytes, bytes, 0, filled[0] - usedBytes);
+                filled[0] -= usedBytes;
+                return frames;
+            }
+            return -1;
+        };
+        return run(source, in.getFrameLength(), scanner, sampleRate);
+    }
+
+    /**
+     * Decodes a memory-mapped WAV file, converting each block straight out of the mapping and
+     * feeding its frequencies to {@code scanner}.
+     */
+    public int decode(WavFile wav, LineScanner scanner, int sampleRate) {
+        long totalFrames = wav.getFrameLength();
+        long[] position = {0};
+        Source source = mono -> {
+            if (position[0] >= totalFrames) {
+                return -1;
+            }
+            int frames = wav.read(position[0], channel, mono, 0, Math.min(blockSize, mono.length));
+            position[0] += frames;
+            return frames;
+        };
+        try {
+            return run(source, totalFrames, scanner, sampleRate);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int run(Source source, long totalFrames, LineScanner scanner, int sampleRate) throws IOException {
+        if (workingSampleRate > 0 && workingSampleRate != sampleRate) {
+            source = resampled(source, new Resampler(sampleRate, workingSampleRate));
+            if (totalFrames > 0) {
+                totalFrames = totalFrames * workingSampleRate / sampleRate;
+            }
+            sampleRate = workingSampleRate;
+        }
+        Demodulator demodulator = demodulator(sampleRate);
+        if (pipelined) {
+            new Pipeline(source, demodulator).run(scanner, totalFrames);
+        } else {
+            Block audio = new Block(blockSize);
+            Block freq = new Block(blockSize);
+            long framesRead = 0;
+            while (!cancelled && (audio.length = source.read(audio.data)) != -1) {
+                freq.length = demodulator.process(audio.data, audio.length, freq.data);
+                scanner.process(freq.data, 0, freq.length);
+                framesRead += audio.length;
+                reportProgress(framesRead, totalFrames, scanner);
+            }
+        }
+
+        if (!cancelled) {
+            scanner.finish();
+        }
+        return scanner.getLineCount();
+    }
+
+    private Demodulator demodulator(int sampleRate) {
+        if (!decimatingFrontEnd) {
+            return new StreamingDemodulator(sampleRate, smoothingFilter, smoothingWindow)::process;
+        }
+        int factor = BasebandDemodulator.factorFor(sampleRate);
+        BasebandDemodulator baseband = new BasebandDemodulator(sampleRate, factor);
+        LowPassFilter smoother = new LowPassFilter(smoothingFilter, BasebandDemodulator.scaleWindow(smoothingWindow, factor));
+        return (samples, length, freqOut) -> {
+            int written = baseband.process(samples, 0, length, freqOut, 0);
+            smoother.process(freqOut, 0, written, freqOut, 0);
+            return written;
+        };
+    }
+
+    private void reportProgress(long framesRead, long totalFrames, LineScanner scanner) {
+        if (progressListener != null) {
+            progressListener.progressUpdated(framesRead, totalFrames, scanner.getLineCount());
+        }
+    }
+
+    /**
+     * Reads input blocks small enough that their resampled length fits a block, and flushes the
+     * filter's tail once the input ends.
+     */
+    private Source resampled(Source source, Resampler resampler) {
+        double[] input = new double[resampler.maxInput(blockSize)];
+        double[] tail = new double[resampler.maxFinishOutput()];
+        boolean[] finished = {false};
+        return mono -> {
+            if (finished[0]) {
+                return -1;
+            }
+            int n = source.read(input);
+            if (n >= 0) {
+                return resampler.process(input, 0, n, mono, 0);
+            }
+            finished[0] = true;
+            int count = Math.min(resampler.finish(tail, 0), mono.length);
+            System.arraycopy(tail, 0, mono, 0, count);
+            return count;
+        };
+    }
+
+    /** Fills {@code mono} with up to a block of samples and returns how many, or -1 at the end. */
+    private interface Source {
+        int read(double[] mono) throws IOException;
+    }
+
+    /** Turns a block of samples into frequencies, returning how many; never more than the samples. */
+    private interface Demodulator {
+        int process(double[] samples, int length, double[] freqOut);
+    }
+
+    /** A reusable block of samples or frequencies, and how far into the file its end lies. */
+    private static final class Block {
+        final double[] data;
+        int length;
+        long position;
+
+        Block(int size) {
+            data = new double[size];
+        }
+    }
+
+    /**
+     * Reading and demodulation each run on a thread of their own, and line scanning on the
+     * caller's, so the three overlap and a block takes as long as the slowest stage rather than
+     * all of them. Blocks go forward through one {@link BlockQueue} per stage boundary and come
+     * back empty through another; only {@link #BLOCKS_IN_FLIGHT} of each kind exist, so no queue
+     * can overflow and nothing is allocated per block.
+     */
+    private final class Pipeline {
+        private static final int BLOCKS_IN_FLIGHT = 8;
+        private static final int SPINS_BEFORE_PARK = 100;
+        private static final long PARK_NANOS = 20_000;
+
+        private final Source source;
+        private final Demodulator demodulator;
+        private final BlockQueue<Block> audio = new BlockQueue<>(BLOCKS_IN_FLIGHT);
+        private final BlockQueue<Block> emptyAudio = new BlockQueue<>(BLOCKS_IN_FLIGHT);
+        private final BlockQueue<Block> freq = new BlockQueue<>(BLOCKS_IN_FLIGHT);
+        private final BlockQueue<Block> emptyFreq = new BlockQueue<>(BLOCKS_IN_FLIGHT);
+        private volatile boolean stopped;
+        private volatile Throwable failure;
+
+        Pipeline(Source source, Demodulator demodulator) {
+            this.source = source;
+            this.demodulator = demodulator;
+            for (int i = 0; i < BLOCKS_IN_FLIGHT; i++) {
+                emptyAudio.offer(new Block(blockSize));
+                emptyFreq.offer(new Block(blockSize));
+            }
+        }
+
+        void run(LineScanner scanner, long totalFrames) throws IOException {
+            Thread reader = start("sstv-read", this::read, audio);
+            Thread demod = start("sstv-demodulate", this::demodulate, freq);
+            try {
+                Block block;
+                while (!cancelled && (block = take(freq)) != null) {
+                    scanner.process(block.data, 0, block.length);
+                    reportProgress(block.position, totalFrames, scanner);
+                    emptyFreq.offer(block);
+                }
+            } finally {
+                stopped = true;
+                join(reader);
+                join(demod);
+            }
+
+            Throwable t = failure;
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+
+        private void read() throws IOException {
+            long position = 0;
+            Block block;
+            while ((block = take(emptyAudio)) != null) {
+                block.length = source.read(block.data);
+                if (block.length < 0) {
+                    return;
+                }
+                position += block.length;
+                block.position = position;
+                audio.offer(block);
+            }
+        }
+
+        private void demodulate() {
+            Block in;
+            while ((in = take(audio)) != null) {
+                Block out = take(emptyFreq);
+                if (out == null) {
+                    return;
+                }
+                out.length = demodulator.process(in.data, in.length, out.data);
+                out.position = in.position;
+                emptyAudio.offer(in);
+                freq.offer(out);
+            }
+        }
+
+        /** The next block from {@code queue}, or {@code null} once it is finished or the pipeline stops. */
+        private Block take(BlockQueue<Block> queue) {
+            for (int spins = 0; ; spins++) {
+                Block block = queue.poll();
+                if (block != null) {
+                    return block;
+                }
+                if (stopped || queue.isFinished()) {
+                    return null;
+                }
+                if (spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        /** Runs {@code stage} on a new thread that closes {@code output} when it ends, however it ends. */
+        private Thread start(String name, Stage stage, BlockQueue<Block> output) {
+            Thread thread = new Thread(() -> {
+                try {
+                    stage.run();
+                } catch (Throwable t) {
+                    failure = t;
+                    stopped = true;
+                } finally {
+                    output.close();
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        private void join(Thread thread) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Block-wise FM demodulator: analytic signal from a FIR Hilbert filter, the phase step between
+ * consecutive samples from the conjugate product z[n] * conj(z[n - 1]), then a
+ * {@link LowPassFilter}. State is carried across
+ * blocks so memory use does not depend on the length of the recording.
+ */
+public class StreamingDemodulator {
+    private static final int HILBERT_TAPS = 127;
+
+    private final double sampleRate;
+    private final HilbertFilter hilbert;
+    private final LowPassFilter smoother;
+
+    private double[] re = new double[0];
+    private double[] im = new double[0];
+    private double previousRe;
+    private double previousIm;
+    private boolean primed;
+
+    public StreamingDemodulator(double sampleRate, int smoothingWindow) {
+        this(sampleRate, LowPassFilter.Type.BOXCAR, smoothingWindow);
+    }
+
+    public StreamingDemodulator(double sampleRate, LowPassFilter.Type smoothingFilter, int smoothingWindow) {
+        this.sampleRate = sampleRate;
+        this.hilbert = new HilbertFilter(HILBERT_TAPS);
+        this.smoother = new LowPassFilter(smoothingFilter, Math.max(1, smoothingWindow));
+    }
+
+    /**
+     * Demodulates {@code length} samples into {@code freqOut}, returning how many frequency
+     * values were written (one less than the input for the very first block).
+     */
+    public int process(double[] samples, int length, double[] freqOut) {
+        if (re.length < length) {
+            re = new double[length];
+            im = new double[length];
+        }
+        hilbert.process(samples, 0, length, re, im);
+
+        double scale = sampleRate / (2.0 * Math.PI);
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            double r = re[i];
+            double q = im[i];
+            if (primed) {
+                double step = Math.atan2(q * previousRe - r * previousIm, r * previousRe + q * previousIm);
+                freqOut[written++] = smoother.next(step * scale);
+            }
+            previousRe = r;
+            previousIm = q;
+            primed = true;
+        }
+        return written;
+    }
+
+    /** Number of samples the output lags behind the input. */
+    public int getDelay() {
+        return hilbert.getDelay() + smoother.getDelay();
+    }
+}
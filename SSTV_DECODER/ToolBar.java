@@ -9,6 +9,7 @@ public class ToolBar extends JToolBar {
     private JButton viewButton;
     private JButton settingsButton;
     private JButton saveAsButton;
+    private JToggleButton liveButton;
     
     public ToolBar() {
         setFloatable(false);
@@ -20,11 +21,14 @@ public class ToolBar extends JToolBar {
         viewButton = createToolbarButton("View", "View Decoded Image", "/icons/view.png");
         settingsButton = createToolbarButton("Settings", "Open Settings Dialog", "/icons/settings.png");
         saveAsButton = createToolbarButton("Save As", "Save Image As...", "/icons/save.png");
+        liveButton = new JToggleButton("Live");
+        liveButton.setToolTipText("Decode live from the audio input");
         
         
         add(openButton);
         addSeparator();
         add(decodeButton);
+        add(liveButton);
         add(viewButton);
         addSeparator();
         add(settingsButton);
@@ -77,11 +81,24 @@ public class ToolBar extends JToolBar {
         saveAsButton.addActionListener(listener);
     }
     
+    public void setLiveAction(ActionListener listener) {
+        liveButton.addActionListener(listener);
+    }
+    
     
     public void setFileSelected(boolean selected) {
         decodeButton.setEnabled(selected);
     }
     
+    public void setLiveRunning(boolean running) {
+        liveButton.setSelected(running);
+        liveButton.setText(running ? "Stop Live" : "Live");
+        openButton.setEnabled(!running);
+        if (running) {
+            decodeButton.setEnabled(false);
+        }
+    }
+    
     public void setImageAvailable(boolean available) {
         viewButton.setEnabled(available);
         saveAsButton.setEnabled(available);
@@ -0,0 +1,225 @@
+/**
+ * Finds the calibration header at the start of an SSTV transmission and reads its VIS code.
+ * <p>
+ * The header is a 1900 Hz leader, a 1200 Hz start bit, seven data bits LSB first (1100 Hz for
+ * 1, 1300 Hz for 0), an optional even parity bit and a 1200 Hz stop bit, each bit 30 ms long.
+ * Only the four header tones matter, so instead of demodulating the audio this measures their
+ * power with Goertzel filters over 10 ms windows, a length at which the three tones 100 Hz
+ * apart are orthogonal. Windows step by 2.5 ms until the start bit is found; each bit is then
+ * read from a single window centred on it.
+ */
+public class VisDecoder {
+    /** How much audio from the start of a recording is searched for the header. */
+    public static final double SEARCH_SECONDS = 1.5;
+
+    private static final double[] TONES = {1100, 1200, 1300, 1900};
+    private static final int BIT_ONE = 0;
+    private static final int START_STOP = 1;
+    private static final int BIT_ZERO = 2;
+    private static final int LEADER = 3;
+    private static final int NONE = -1;
+
+    private static final double WINDOW_MS = 10;
+    private static final double BIT_MS = 30;
+    private static final double MIN_LEADER_MS = 100;
+    private static final double MIN_START_MS = 20;
+    private static final double MIN_PURITY = 0.4;
+
+    /** A VIS code and where it was found. */
+    public static class Header {
+        private final int code;
+        private final boolean parity;
+        private final long start;
+        private final long end;
+
+        Header(int code, boolean parity, long start, long end) {
+            this.code = code;
+            this.parity = parity;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /** True if the header carried a parity bit after the seven data bits. */
+        public boolean hasParity() {
+            return parity;
+        }
+
+        /** Sample at which the start bit begins. */
+        public long getStart() {
+            return start;
+        }
+
+        /** Sample just after the stop bit, where the first line begins. */
+        public long getEnd() {
+            return end;
+        }
+
+        /** The mode this code announces, or {@code null} if it is not a known one. */
+        public SstvMode getMode() {
+            return SstvMode.forVisCode(code);
+        }
+
+        /** Name of the mode this code announces, or {@code "VIS <code>"} if it is not a known one. */
+        public String getModeName() {
+            SstvMode mode = getMode();
+            return mode != null ? mode.getName() : "VIS " + code;
+        }
+
+        @Override
+        public String toString() {
+            return getModeName() + " (VIS " + code + ")";
+        }
+    }
+
+    private final double sampleRate;
+    private final int window;
+    private final int hop;
+    private final double[] coefficients = new double[TONES.length];
+    private final double[] powers = new double[TONES.length];
+
+    public VisDecoder(double sampleRate) {
+        this.sampleRate = sampleRate;
+        this.window = samplesFor(WINDOW_MS);
+        this.hop = Math.max(1, window / 4);
+        for (int t = 0; t < TONES.length; t++) {
+            coefficients[t] = 2 * Math.cos(2 * Math.PI * TONES[t] / sampleRate);
+        }
+    }
+
+    /** Number of samples from the start of a recording that {@link #detect} needs. */
+    public int searchLength() {
+        return samplesFor(SEARCH_SECONDS * 1000);
+    }
+
+    /**
+     * Looks for a VIS header in the first {@code length} samples, returning the first one that
+     * decodes cleanly, or {@code null} if there is none.
+     */
+    public Header detect(double[] samples, int length) {
+        int bit = samplesFor(BIT_MS);
+        int minLeader = (int) (MIN_LEADER_MS / (1000.0 * hop / sampleRate));
+        int minStart = (int) (MIN_START_MS / (1000.0 * hop / sampleRate));
+
+        int leaderRun = 0;
+        boolean leaderSeen = false;
+        int startRun = 0;
+        int startAt = 0;
+        for (int pos = 0; pos + window <= length; pos += hop) {
+            int tone = classify(samples, pos, window);
+            if (tone == LEADER) {
+                if (++leaderRun >= minLeader) {
+                    leaderSeen = true;
+                }
+                startRun = 0;
+                continue;
+            }
+            leaderRun = 0;
+            if (!leaderSeen || tone != START_STOP) {
+                startRun = 0;
+                continue;
+            }
+            if (startRun++ == 0) {
+                startAt = pos;
+            }
+            if (startRun < minStart) {
+                continue;
+            }
+
+            Header header = readBits(samples, length, startAt, bit);
+            if (header != null) {
+                return header;
+            }
+            // Not a header after all; keep looking for another leader.
+            leaderSeen = false;
+            startRun = 0;
+        }
+        return null;
+    }
+
+    private Header readBits(double[] samples, int length, int start, int bit) {
+        int code = 0;
+        int ones = 0;
+        for (int i = 0; i < 7; i++) {
+            int tone = toneAt(samples, length, start + (i + 1) * bit, bit);
+            if (tone == BIT_ONE) {
+                code |= 1 << i;
+                ones++;
+            } else if (tone != BIT_ZERO) {
+                return null;
+            }
+        }
+
+        int tone = toneAt(samples, length, start + 8 * bit, bit);
+        if (tone == START_STOP) {
+            return new Header(code, false, start, start + 9L * bit);
+        }
+        if (tone != BIT_ONE && tone != BIT_ZERO) {
+            return null;
+        }
+        int parity = tone == BIT_ONE ? 1 : 0;
+        if ((ones + parity) % 2 != 0 || toneAt(samples, length, start + 9 * bit, bit) != START_STOP) {
+            return null;
+        }
+        return new Header(code, true, start, start + 10L * bit);
+    }
+
+    /** Tone of the window centred in the bit that starts at {@code bitStart}. */
+    private int toneAt(double[] samples, int length, int bitStart, int bit) {
+        int pos = bitStart + (bit - window) / 2;
+        if (pos + window > length) {
+            return NONE;
+        }
+        return classify(samples, pos, window);
+    }
+
+    /**
+     * The header tone that carries most of the window's energy, or {@link #NONE} if none of
+     * them carries at least {@link #MIN_PURITY} of it.
+     */
+    private int classify(double[] samples, int pos, int n) {
+        double energy = 0;
+        double s1a = 0, s2a = 0, s1b = 0, s2b = 0, s1c = 0, s2c = 0, s1d = 0, s2d = 0;
+        double ca = coefficients[0], cb = coefficients[1], cc = coefficients[2], cd = coefficients[3];
+        for (int i = pos; i < pos + n; i++) {
+            double x = samples[i];
+            energy += x * x;
+            double a = x + ca * s1a - s2a;
+            s2a = s1a;
+            s1a = a;
+            double b = x + cb * s1b - s2b;
+            s2b = s1b;
+            s1b = b;
+            double c = x + cc * s1c - s2c;
+            s2c = s1c;
+            s1c = c;
+            double d = x + cd * s1d - s2d;
+            s2d = s1d;
+            s1d = d;
+        }
+        powers[0] = s1a * s1a + s2a * s2a - ca * s1a * s2a;
+        powers[1] = s1b * s1b + s2b * s2b - cb * s1b * s2b;
+        powers[2] = s1c * s1c + s2c * s2c - cc * s1c * s2c;
+        powers[3] = s1d * s1d + s2d * s2d - cd * s1d * s2d;
+
+        if (energy == 0) {
+            return NONE;
+        }
+        int best = 0;
+        for (int t = 1; t < TONES.length; t++) {
+            if (powers[t] > powers[best]) {
+                best = t;
+            }
+        }
+        // A pure tone of any amplitude scores 1: its power is (n * A / 2)^2 and its energy n * A^2 / 2.
+        double purity = 2 * powers[best] / (n * energy);
+        return purity >= MIN_PURITY ? best : NONE;
+    }
+
+    private int samplesFor(double durationMs) {
+        return (int) (durationMs / 1000 * sampleRate);
+    }
+}
@@ -0,0 +1,207 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A PCM or IEEE float WAV file whose {@code data} chunk is memory-mapped rather than read onto
+ * the heap. Samples are converted straight out of the mapping into the caller's buffer one
+ * window at a time, so recordings of any length can be decoded in constant memory.
+ * <p>
+ * A single mapping is limited to 2 GB, so the data chunk is mapped as consecutive segments
+ * whose size is a whole number of frames. Instances are not thread-safe.
+ */
+public class WavFile implements Closeable {
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final FileChannel channel;
+    private final AudioFormat format;
+    private final PcmConverter converter;
+    private final int frameSize;
+    private final long frameLength;
+    private final int segmentFrames;
+    private final MappedByteBuffer[] segments;
+
+    private WavFile(FileChannel channel, AudioFormat format, long dataOffset, long dataLength)
+            throws IOException, UnsupportedAudioFileException {
+        this.channel = channel;
+        this.format = format;
+        this.converter = new PcmConverter(format);
+        this.frameSize = format.getFrameSize();
+        this.frameLength = dataLength / frameSize;
+        this.segmentFrames = SEGMENT_BYTES / frameSize;
+
+        long segmentBytes = (long) segmentFrames * frameSize;
+        long mappedBytes = frameLength * frameSize;
+        segments = new MappedByteBuffer[(int) ((mappedBytes + segmentBytes - 1) / segmentBytes)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * segmentBytes;
+            long size = Math.min(segmentBytes, mappedBytes - start);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start, size);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /** Returns true if {@code file} starts with a RIFF/WAVE header. */
+    public static boolean isWav(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            return !header.hasRemaining() && fourCc(header, 0).equals("RIFF") && fourCc(header, 8).equals("WAVE");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static WavFile open(File file) throws IOException, UnsupportedAudioFileException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return parse(channel);
+        } catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static WavFile parse(FileChannel channel) throws IOException, UnsupportedAudioFileException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (!fourCc(header, 0).equals("RIFF") || !fourCc(header, 8).equals("WAVE")) {
+            throw new UnsupportedAudioFileException("Not a RIFF/WAVE file");
+        }
+
+        AudioFormat format = null;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 12;
+        while (position + 8 <= fileSize) {
+            chunkHeader.clear();
+            readFully(channel, chunkHeader, position);
+            String id = fourCc(chunkHeader, 0);
+            long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+            long body = position + 8;
+
+            if (id.equals("fmt ")) {
+                ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 40)).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, fmt, body);
+                format = parseFormat(fmt);
+            } else if (id.equals("data")) {
+                if (format == null) {
+                    throw new UnsupportedAudioFileException("WAV data chunk precedes its fmt chunk");
+                }
+                // Recorders that are interrupted leave the size at 0 or 0xFFFFFFFF, and a
+                // truncated copy claims more than it holds; trust the file length instead.
+                long available = fileSize - body;
+                long length = size == 0 || size > available ? available : size;
+                return new WavFile(channel, format, body, length);
+            }
+
+            position = body + size + (size & 1);
+        }
+        throw new UnsupportedAudioFileException("WAV file has no data chunk");
+    }
+
+    private static AudioFormat parseFormat(ByteBuffer fmt) throws UnsupportedAudioFileException {
+        if (fmt.capacity() < 16) {
+            throw new UnsupportedAudioFileException("WAV fmt chunk is too short");
+        }
+        int tag = fmt.getShort(0) & 0xFFFF;
+        int channels = fmt.getShort(2) & 0xFFFF;
+        int sampleRate = fmt.getInt(4);
+        int blockAlign = fmt.getShort(12) & 0xFFFF;
+        int bits = fmt.getShort(14) & 0xFFFF;
+        if (tag == FORMAT_EXTENSIBLE && fmt.capacity() >= 26) {
+            tag = fmt.getShort(24) & 0xFFFF;
+        }
+
+        boolean pcm = tag == FORMAT_PCM && (bits == 8 || bits == 16 || bits == 24 || bits == 32);
+        boolean ieee = tag == FORMAT_FLOAT && (bits == 32 || bits == 64);
+        if (!pcm && !ieee) {
+            throw new UnsupportedAudioFileException("Unsupported WAV encoding: format " + tag + ", " + bits + " bits");
+        }
+        if (channels < 1 || blockAlign != channels * bits / 8) {
+            throw new UnsupportedAudioFileException("Malformed WAV fmt chunk");
+        }
+
+        // WAV stores 8-bit samples unsigned and wider samples signed, always little-endian.
+        AudioFormat.Encoding encoding = ieee ? AudioFormat.Encoding.PCM_FLOAT
+                : bits > 8 ? AudioFormat.Encoding.PCM_SIGNED : AudioFormat.Encoding.PCM_UNSIGNED;
+        return new AudioFormat(encoding, sampleRate, bits, channels, blockAlign, sampleRate, false);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of WAV file");
+            }
+        }
+    }
+
+    private static String fourCc(ByteBuffer buffer, int offset) {
+        char[] id = new char[4];
+        for (int i = 0; i < 4; i++) {
+            id[i] = (char) (buffer.get(offset + i) & 0xFF);
+        }
+        return new String(id);
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Converts up to {@code frames} samples of one channel, or the mean of all of them if
+     * {@code channel} is {@link PcmConverter#DOWNMIX}, starting at frame {@code start}, into
+     * {@code out} as values in [-1, 1). Returns the number of frames converted, which is only
+     * short of {@code frames} at the end of the data.
+     */
+    public int read(long start, int channel, double[] out, int offset, int frames) {
+        int total = (int) Math.max(0, Math.min(frames, frameLength - start));
+        int done = 0;
+        while (done < total) {
+            long frame = start + done;
+            MappedByteBuffer segment = segments[(int) (frame / segmentFrames)];
+            int first = (int) (frame % segmentFrames);
+            int count = Math.min(total - done, segmentFrames - first);
+            converter.convert(segment, first * frameSize, count, channel, out, offset + done);
+            done += count;
+        }
+        return total;
+    }
+
+    /** Single-precision version of {@link #read(long, int, double[], int, int)}. */
+    public int read(long start, int channel, float[] out, int offset, int frames) {
+        int total = (int) Math.max(0, Math.min(frames, frameLength - start));
+        int done = 0;
+        while (done < total) {
+            long frame = start + done;
+            MappedByteBuffer segment = segments[(int) (frame / segmentFrames)];
+            int first = (int) (frame % segmentFrames);
+            int count = Math.min(total - done, segmentFrames - first);
+            converter.convert(segment, first * frameSize, count, channel, out, offset + done);
+            done += count;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
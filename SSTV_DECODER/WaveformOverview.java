@@ -0,0 +1,129 @@
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Min/max pyramid over a recording, so a waveform can be drawn at any zoom in time proportional
+ * to its width in pixels rather than its length in samples. Level 0 holds the extremes of each
+ * {@link #BASE_BLOCK} samples, and each level above holds the extremes of two blocks of the one
+ * below. Level 0, which touches every sample, is built in parallel.
+ */
+public final class WaveformOverview {
+    static final int BASE_BLOCK = 64;
+    private static final int BLOCKS_PER_TASK = 4096;
+
+    private final int length;
+    private final IntToDoubleFunction samples;
+    private final float[][] min;
+    private final float[][] max;
+
+    public WaveformOverview(double[] samples) {
+        this(samples.length, i -> samples[i]);
+    }
+
+    public WaveformOverview(float[] samples) {
+        this(samples.length, i -> samples[i]);
+    }
+
+    private WaveformOverview(int length, IntToDoubleFunction samples) {
+        this.length = length;
+        this.samples = samples;
+        int levels = 1;
+        for (long blocks = blocks(length, BASE_BLOCK); blocks > 1; blocks = (blocks + 1) / 2) {
+            levels++;
+        }
+        min = new float[levels][];
+        max = new float[levels][];
+
+        int baseBlocks = (int) blocks(length, BASE_BLOCK);
+        min[0] = new float[baseBlocks];
+        max[0] = new float[baseBlocks];
+        IntStream.range(0, (int) blocks(baseBlocks, BLOCKS_PER_TASK)).parallel().forEach(task -> {
+            int end = Math.min(baseBlocks, (task + 1) * BLOCKS_PER_TASK);
+            for (int b = task * BLOCKS_PER_TASK; b < end; b++) {
+                int from = b * BASE_BLOCK;
+                int to = Math.min(length, from + BASE_BLOCK);
+                double lo = samples.applyAsDouble(from);
+                double hi = lo;
+                for (int i = from + 1; i < to; i++) {
+                    double sample = samples.applyAsDouble(i);
+                    lo = Math.min(lo, sample);
+                    hi = Math.max(hi, sample);
+                }
+                min[0][b] = (float) lo;
+                max[0][b] = (float) hi;
+            }
+        });
+
+        for (int level = 1; level < levels; level++) {
+            float[] lowerMin = min[level - 1];
+            float[] lowerMax = max[level - 1];
+            int count = (lowerMin.length + 1) / 2;
+            min[level] = new float[count];
+            max[level] = new float[count];
+            for (int b = 0; b < count; b++) {
+                int pair = Math.min(2 * b + 1, lowerMin.length - 1);
+                min[level][b] = Math.min(lowerMin[2 * b], lowerMin[pair]);
+                max[level][b] = Math.max(lowerMax[2 * b], lowerMax[pair]);
+            }
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Fills {@code lo} and {@code hi} with the extremes of {@code columns} equal spans of samples
+     * {@code from} to {@code to}. Spans are snapped to whole blocks of the coarsest level that
+     * fits in one, which moves column edges by less than a column.
+     */
+    public void envelope(long from, long to, int columns, float[] lo, float[] hi) {
+        double perColumn = (double) (to - from) / columns;
+        int level = -1;
+        while (level + 1 < min.length && ((long) BASE_BLOCK << (level + 1)) <= perColumn) {
+            level++;
+        }
+
+        for (int c = 0; c < columns; c++) {
+            long start = from + (long) (c * perColumn);
+            long end = Math.max(start + 1, from + (long) ((c + 1) * perColumn));
+            start = Math.max(0, start);
+            end = Math.min(length, end);
+            if (start >= end) {
+                lo[c] = Float.NaN;
+                hi[c] = Float.NaN;
+            } else if (level < 0) {
+                rawExtremes((int) start, (int) end, lo, hi, c);
+            } else {
+                int shift = Integer.numberOfTrailingZeros(BASE_BLOCK) + level;
+                int first = (int) (start >> shift);
+                int last = end == length ? min[level].length : (int) (end >> shift);
+                last = Math.max(first + 1, last);
+                float a = min[level][first];
+                float b = max[level][first];
+                for (int i = first + 1; i < last; i++) {
+                    a = Math.min(a, min[level][i]);
+                    b = Math.max(b, max[level][i]);
+                }
+                lo[c] = a;
+                hi[c] = b;
+            }
+        }
+    }
+
+    private void rawExtremes(int start, int end, float[] lo, float[] hi, int column) {
+        double a = samples.applyAsDouble(start);
+        double b = a;
+        for (int i = start + 1; i < end; i++) {
+            double sample = samples.applyAsDouble(i);
+            a = Math.min(a, sample);
+            b = Math.max(b, sample);
+        }
+        lo[column] = (float) a;
+        hi[column] = (float) b;
+    }
+
+    private static long blocks(long length, int block) {
+        return (length + block - 1) / block;
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockQueueTest {
+    @Test
+    void capacityRoundsUpToAPowerOfTwoOfAtLeastFour() {
+        int[][] cases = {{1, 4}, {3, 4}, {4, 4}, {5, 8}, {8, 8}, {9, 16}, {1000, 1024}};
+        for (int[] c : cases) {
+            BlockQueue<Integer> queue = new BlockQueue<>(c[0]);
+            int accepted = 0;
+            while (queue.offer(accepted)) {
+                accepted++;
+            }
+            assertEquals(c[1], accepted, "capacity for " + c[0]);
+        }
+    }
+
+    @Test
+    void pollsInOfferOrderAcrossWraparound() {
+        BlockQueue<Integer> queue = new BlockQueue<>(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            while (queue.offer(next)) {
+                next++;
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, queue.poll());
+            }
+        }
+        Integer item;
+        while ((item = queue.poll()) != null) {
+            assertEquals(expected++, item);
+        }
+        assertEquals(next, expected);
+    }
+
+    @Test
+    void finishesOnlyWhenClosedAndDrained() {
+        BlockQueue<String> queue = new BlockQueue<>(2);
+        assertNull(queue.poll());
+        queue.offer("last");
+        queue.close();
+
+        assertFalse(queue.isFinished());
+        assertEquals("last", queue.poll());
+        assertTrue(queue.isFinished());
+        assertNull(queue.poll());
+    }
+
+    /** One producer and one consumer racing each other through a small queue, yielding when it is full or empty. */
+    @Test
+    void handsOverEveryItemInOrderBetweenTwoThreads() throws InterruptedException {
+        int count = 200_000;
+        BlockQueue<Integer> queue = new BlockQueue<>(16);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            int expected = 0;
+            while (!queue.isFinished()) {
+                Integer item = queue.poll();
+                if (item == null) {
+                    Thread.yield();
+                    continue;
+                }
+                if (item != expected) {
+                    error.set("expected " + expected + " but got " + item);
+                    return;
+                }
+                expected++;
+            }
+            if (expected != count) {
+                error.set("received " + expected + " of " + count);
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < count; i++) {
+            while (!queue.offer(i)) {
+                Thread.yield();
+            }
+        }
+        queue.close();
+        consumer.join(60_000);
+
+        assertFalse(consumer.isAlive(), "consumer did not finish");
+        assertNull(error.get());
+    }
+}
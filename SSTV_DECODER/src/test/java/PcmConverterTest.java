@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PcmConverterTest {
+    private static final float RATE = 44100;
+
+    @Test
+    void unsignedEightBitIsCentredOnMidScale() throws Exception {
+        PcmConverter converter = new PcmConverter(new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, RATE, 8, 1, 1, RATE, false));
+        byte[] bytes = {0, (byte) 0x80, (byte) 0xFF};
+
+        assertArrayEquals(new double[]{-1.0, 128 / 255.0 * 2 - 1, 1.0}, convert(converter, bytes, 3, 0), 1e-12);
+    }
+
+    @Test
+    void twentyFourBitIsSignExtendedInEitherByteOrder() throws Exception {
+        int[] values = {0x7FFFFF, -0x800000, 1, -1, 0};
+        double[] expected = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expected[i] = values[i] / 8388608.0;
+        }
+
+        for (boolean bigEndian : new boolean[]{false, true}) {
+            byte[] bytes = new byte[3 * values.length];
+            for (int i = 0; i < values.length; i++) {
+                for (int b = 0; b < 3; b++) {
+                    int shift = bigEndian ? 16 - 8 * b : 8 * b;
+                    bytes[3 * i + b] = (byte) (values[i] >> shift);
+                }
+            }
+            PcmConverter converter = new PcmConverter(new AudioFormat(RATE, 24, 1, true, bigEndian));
+
+            assertArrayEquals(expected, convert(converter, bytes, values.length, 0), 0.0);
+        }
+    }
+
+    @Test
+    void floatSamplesPassThroughInEitherByteOrder() throws Exception {
+        double[] values = {0.5, -0.25, 1.0, -1.0, 0.1};
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            boolean bigEndian = order == ByteOrder.BIG_ENDIAN;
+
+            ByteBuffer singles = ByteBuffer.allocate(4 * values.length).order(order);
+            ByteBuffer doubles = ByteBuffer.allocate(8 * values.length).order(order);
+            double[] rounded = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                singles.putFloat((float) values[i]);
+                doubles.putDouble(values[i]);
+                rounded[i] = (float) values[i];
+            }
+            PcmConverter f32 = new PcmConverter(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, RATE, 32, 1, 4, RATE, bigEndian));
+            PcmConverter f64 = new PcmConverter(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, RATE, 64, 1, 8, RATE, bigEndian));
+
+            assertArrayEquals(rounded, convert(f32, singles.array(), values.length, 0), 0.0);
+            assertArrayEquals(values, convert(f64, doubles.array(), values.length, 0), 0.0);
+        }
+    }
+
+    @Test
+    void downmixAveragesEveryChannel() throws Exception {
+        short[][] frames = {{1000, -3000, 8000}, {-32768, 32767, 0}, {0, 0, 300}};
+        ByteBuffer bytes = ByteBuffer.allocate(6 * frames.length).order(ByteOrder.LITTLE_ENDIAN);
+        double[] mix = new double[frames.length];
+        double[] middle = new double[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            for (short sample : frames[i]) {
+                bytes.putShort(sample);
+                mix[i] += sample / 32768.0 / 3;
+            }
+            middle[i] = frames[i][1] / 32768.0;
+        }
+        PcmConverter converter = new PcmConverter(new AudioFormat(RATE, 16, 3, true, false));
+
+        assertArrayEquals(mix, convert(converter, bytes.array(), frames.length, PcmConverter.DOWNMIX), 1e-15);
+        assertArrayEquals(middle, convert(converter, bytes.array(), frames.length, 1), 0.0);
+    }
+
+    /** The single-precision path goes through a scratch block, so it is checked across several. */
+    @Test
+    void floatOutputMatchesDoubleAcrossScratchBlocks() throws Exception {
+        int frames = 10_000;
+        ByteBuffer bytes = ByteBuffer.allocate(4 * frames).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < frames; i++) {
+            bytes.putShort((short) (i * 7)).putShort((short) -(i * 3));
+        }
+        PcmConverter converter = new PcmConverter(new AudioFormat(RATE, 16, 2, true, false));
+        double[] wide = convert(converter, bytes.array(), frames, PcmConverter.DOWNMIX);
+        float[] narrow = new float[frames];
+
+        converter.convert(ByteBuffer.wrap(bytes.array()), 0, frames, PcmConverter.DOWNMIX, narrow, 0);
+
+        for (int i = 0; i < frames; i++) {
+            assertEquals((float) wide[i], narrow[i], "frame " + i);
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedFormatsAndMissingChannels() throws Exception {
+        assertThrows(UnsupportedAudioFileException.class,
+                () -> new PcmConverter(new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, RATE, 24, 1, 3, RATE, false)));
+        assertThrows(UnsupportedAudioFileException.class,
+                () -> new PcmConverter(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, RATE, 16, 1, 2, RATE, false)));
+
+        PcmConverter stereo = new PcmConverter(new AudioFormat(RATE, 16, 2, true, false));
+        assertThrows(IllegalArgumentException.class, () -> convert(stereo, new byte[4], 1, 2));
+    }
+
+    private static double[] convert(PcmConverter converter, byte[] bytes, int frames, int channel) {
+        double[] out = new double[frames];
+        converter.convert(ByteBuffer.wrap(bytes), 0, frames, channel, out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frequency response of the resampler, measured by passing one second of a sine through it and
+ * projecting the middle half of the output onto the tone it should come out as.
+ */
+class ResamplerTest {
+    private static final int[][] RATE_PAIRS = {{48000, 44100}, {44100, 48000}, {44100, 11025}, {11025, 44100}};
+
+    @Test
+    void passbandIsFlat() {
+        for (int[] rates : RATE_PAIRS) {
+            double nyquist = Math.min(rates[0], rates[1]) / 2.0;
+            for (double fraction = 0.05; fraction <= 0.7; fraction += 0.05) {
+                double gain = gainDb(rates[0], rates[1], fraction * nyquist);
+                assertEquals(0.0, gain, 0.05, rates[0] + " -> " + rates[1] + " Hz at " + fraction * nyquist + " Hz");
+            }
+        }
+    }
+
+    @Test
+    void cutoffIsHalfAmplitudeAtEightyFivePercentOfNyquist() {
+        for (int[] rates : RATE_PAIRS) {
+            double nyquist = Math.min(rates[0], rates[1]) / 2.0;
+            assertEquals(-6.0, gainDb(rates[0], rates[1], 0.85 * nyquist), 0.5, rates[0] + " -> " + rates[1] + " Hz");
+        }
+    }
+
+    /** Above the output's Nyquist rate a tone can only come back as an alias, which must be suppressed. */
+    @Test
+    void decimationSuppressesAliases() {
+        for (double frequency : new double[]{6300, 7200, 8800, 12000, 20000}) {
+            double gain = gainDb(44100, 11025, frequency);
+            assertTrue(gain < -70, frequency + " Hz aliased at " + gain + " dB");
+        }
+    }
+
+    /** Output n is the input at time n * M / L, so a passband tone keeps its phase. */
+    @Test
+    void outputIsAlignedWithInput() {
+        int inputRate = 44100;
+        int outputRate = 11025;
+        double frequency = 1900;
+        double[] out = Resampler.resample(sine(inputRate, frequency), inputRate, outputRate);
+
+        assertEquals(outputRate, out.length);
+        for (int n = out.length / 4; n < 3 * out.length / 4; n++) {
+            assertEquals(Math.sin(2 * Math.PI * frequency * n / outputRate), out[n], 1e-3, "sample " + n);
+        }
+    }
+
+    @Test
+    void floatVersionMatchesDouble() {
+        double[] in = sine(48000, 1200);
+        float[] narrow = new float[in.length];
+        for (int i = 0; i < in.length; i++) {
+            narrow[i] = (float) in[i];
+        }
+
+        double[] wide = Resampler.resample(in, 48000, 44100);
+        float[] out = Resampler.resample(narrow, 48000, 44100);
+
+        assertEquals(wide.length, out.length);
+        for (int i = 0; i < out.length; i++) {
+            assertEquals(wide[i], out[i], 1e-5, "sample " + i);
+        }
+    }
+
+    private static double gainDb(int inputRate, int outputRate, double frequency) {
+        double[] out = Resampler.resample(sine(inputRate, frequency), inputRate, outputRate);
+        double alias = Math.abs(frequency - outputRate * Math.rint(frequency / outputRate));
+        double sin = 0;
+        double cos = 0;
+        int n = 0;
+        for (int i = out.length / 4; i < 3 * out.length / 4; i++, n++) {
+            double angle = 2 * Math.PI * alias * i / outputRate;
+            sin += out[i] * Math.sin(angle);
+            cos += out[i] * Math.cos(angle);
+        }
+        return 20 * Math.log10(2 * Math.hypot(sin, cos) / n);
+    }
+
+    private static double[] sine(int sampleRate, double frequency) {
+        double[] samples = new double[sampleRate];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Math.sin(2 * Math.PI * frequency * i / sampleRate);
+        }
+        return samples;
+    }
+}
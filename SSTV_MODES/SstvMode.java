@@ -0,0 +1,424 @@
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An SSTV mode as data: image size, VIS code, colour space and the tones and scans that make
+ * up each line. The encoder and the decoder both work from these descriptors, so supporting
+ * another mode means adding an entry to {@link #MODES} rather than another generator and sampler.
+ * <p>
+ * Lines may cycle through several layouts (Robot 36 sends V after the luma on even lines and U
+ * on odd ones), and one line may carry several image rows (PD sends two luma rows around one
+ * chroma pair). {@link #timing} turns the millisecond durations into integer sample offsets
+ * once per sample rate, so the per-line loops never work with float durations.
+ */
+public final class SstvMode {
+    public enum ColorSpace { YUV, RGB }
+
+    /**
+     * What a scan carries. U and V are the B-Y and R-Y differences scaled as in Robot 36 and
+     * offset by 128. The encoder's {@code ChannelPlanes} and the decoder's sampler index their
+     * planes by ordinal, so the order only has to stay fixed, not match any array layout.
+     */
+    public enum Channel { Y, U, V, R, G, B }
+
+    public static final double SYNC_FREQ = 1200;
+    public static final double BLACK_FREQ = 1500;
+    public static final double WHITE_FREQ = 2300;
+
+    /** A tone of fixed frequency, or a scan of one row of a channel from black to white. */
+    public static final class Segment {
+        /** Row of a multi-row line for a scan that averages all of the line's rows. */
+        public static final int ALL_ROWS = -1;
+
+        private final float durationMs;
+        private final double frequency;
+        private final boolean sync;
+        private final Channel channel;
+        private final int pixels;
+        private final int row;
+
+        private Segment(float durationMs, double frequency, boolean sync, Channel channel, int pixels, int row) {
+            this.durationMs = durationMs;
+            this.frequency = frequency;
+            this.sync = sync;
+            this.channel = channel;
+            this.pixels = pixels;
+            this.row = row;
+        }
+
+        public static Segment sync(float durationMs) {
+            return new Segment(durationMs, SYNC_FREQ, true, null, 0, 0);
+        }
+
+        public static Segment tone(double frequency, float durationMs) {
+            return new Segment(durationMs, frequency, false, null, 0, 0);
+        }
+
+        public static Segment scan(Channel channel, float durationMs, int pixels) {
+            return scan(channel, durationMs, pixels, 0);
+        }
+
+        public static Segment scan(Channel channel, float durationMs, int pixels, int row) {
+            return new Segment(durationMs, 0, false, channel, pixels, row);
+        }
+
+        public float getDurationMs() {
+            return durationMs;
+        }
+
+        /** Frequency of a tone; 0 for a scan. */
+        public double getFrequency() {
+            return frequency;
+        }
+
+        public boolean isSync() {
+            return sync;
+        }
+
+        public boolean isScan() {
+            return channel != null;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        public int getPixels() {
+            return pixels;
+        }
+
+        /** Which of the line's rows a scan belongs to, or {@link #ALL_ROWS}. */
+        public int getRow() {
+            return row;
+        }
+    }
+
+    private static final Segment[] NO_PREAMBLE = {};
+
+    public static final SstvMode ROBOT_36 = new SstvMode("Robot 36", 8, 320, 240, ColorSpace.YUV, 1, NO_PREAMBLE,
+            robot36Line(BLACK_FREQ, Channel.V), robot36Line(WHITE_FREQ, Channel.U));
+
+    public static final SstvMode ROBOT_72 = new SstvMode("Robot 72", 12, 320, 240, ColorSpace.YUV, 1, NO_PREAMBLE,
+            new Segment[]{
+                    Segment.sync(9), Segment.tone(BLACK_FREQ, 3), Segment.scan(Channel.Y, 138, 320),
+                    Segment.tone(BLACK_FREQ, 4.5f), Segment.tone(1900, 1.5f), Segment.scan(Channel.V, 69, 160),
+                    Segment.tone(WHITE_FREQ, 4.5f), Segment.tone(1900, 1.5f), Segment.scan(Channel.U, 69, 160)});
+
+    private static final List<SstvMode> MODES = List.of(
+            ROBOT_36,
+            ROBOT_72,
+            martin("Martin 1", 44, 146.432f),
+            martin("Martin 2", 40, 73.216f),
+            scottie("Scottie 1", 60, 138.24f),
+            scottie("Scottie 2", 56, 88.064f),
+            scottie("Scottie DX", 76, 345.6f),
+            pd("PD 50", 93, 320, 256, 91.52f),
+            pd("PD 90", 99, 320, 256, 170.24f),
+            pd("PD 120", 95, 640, 496, 121.6f),
+            pd("PD 160", 98, 512, 400, 195.584f),
+            pd("PD 180", 96, 640, 496, 183.04f),
+            pd("PD 240", 97, 640, 496, 244.48f),
+            pd("PD 290", 94, 800, 616, 228.8f));
+
+    private final String name;
+    private final int visCode;
+    private final int width;
+    private final int height;
+    private final ColorSpace colorSpace;
+    private final int rowsPerLine;
+    private final Segment[] preamble;
+    private final Segment[][] layouts;
+
+    private SstvMode(String name, int visCode, int width, int height, ColorSpace colorSpace, int rowsPerLine,
+                     Segment[] preamble, Segment[]... layouts) {
+        for (Segment[] layout : layouts) {
+            int syncs = 0;
+            for (Segment segment : layout) {
+                if (segment.isSync()) {
+                    syncs++;
+                }
+            }
+            if (syncs != 1) {
+                throw new IllegalArgumentException(name + " needs exactly one sync pulse per line");
+            }
+        }
+        this.name = name;
+        this.visCode = visCode;
+        this.width = width;
+        this.height = height;
+        this.colorSpace = colorSpace;
+        this.rowsPerLine = rowsPerLine;
+        this.preamble = preamble;
+        this.layouts = layouts;
+    }
+
+    /** Every registered mode. */
+    public static List<SstvMode> all() {
+        return MODES;
+    }
+
+    /** The mode a VIS header announces, or {@code null} if it is not a known one. */
+    public static SstvMode forVisCode(int code) {
+        for (SstvMode mode : MODES) {
+            if (mode.visCode == code) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    /** Looks a mode up by name, ignoring case, spaces and punctuation ("robot36", "PD-120"). */
+    public static SstvMode forName(String name) {
+        String key = normalize(name);
+        for (SstvMode mode : MODES) {
+            if (normalize(mode.name).equals(key)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown SSTV mode: " + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getVisCode() {
+        return visCode;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public ColorSpace getColorSpace() {
+        return colorSpace;
+    }
+
+    /** Image rows sent per sync pulse. */
+    public int getRowsPerLine() {
+        return rowsPerLine;
+    }
+
+    /** Lines, each starting at a sync pulse, in one transmission. */
+    public int getLines() {
+        return height / rowsPerLine;
+    }
+
+    /** Number of layouts that lines cycle through; line {@code n} uses layout {@code n % count}. */
+    public int getLayoutCount() {
+        return layouts.length;
+    }
+
+    public int getSegmentCount(int layout) {
+        return layouts[layout].length;
+    }
+
+    public Segment getSegment(int layout, int index) {
+        return layouts[layout][index];
+    }
+
+    /** Tones sent once between the VIS header and the first line. */
+    public int getPreambleLength() {
+        return preamble.length;
+    }
+
+    public Segment getPreamble(int index) {
+        return preamble[index];
+    }
+
+    /** Sample offsets of every segment at {@code sampleRate}. */
+    public Timing timing(int sampleRate) {
+        return new Timing(this, sampleRate);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Integer sample positions of a mode's segments at one sample rate. Each duration is
+     * truncated to whole samples on its own, exactly as the encoder lays the audio out, and
+     * every scan has a table of where each of its pixels starts.
+     */
+    public static final class Timing {
+        private final SstvMode mode;
+        private final int sampleRate;
+        private final int[] preambleLengths;
+        private final int[][] starts;
+        private final int[][] lengths;
+        private final int[][][] pixelStarts;
+        private final int[] syncEnds;
+        private final int[] lineLengths;
+        private final int syncLength;
+        private final int porchLength;
+
+        private Timing(SstvMode mode, int sampleRate) {
+            this.mode = mode;
+            this.sampleRate = sampleRate;
+
+            preambleLengths = new int[mode.preamble.length];
+            for (int i = 0; i < preambleLengths.length; i++) {
+                preambleLengths[i] = samplesFor(mode.preamble[i].durationMs, sampleRate);
+            }
+
+            int count = mode.layouts.length;
+            starts = new int[count][];
+            lengths = new int[count][];
+            pixelStarts = new int[count][][];
+            syncEnds = new int[count];
+            lineLengths = new int[count];
+            for (int l = 0; l < count; l++) {
+                Segment[] layout = mode.layouts[l];
+                starts[l] = new int[layout.length];
+                lengths[l] = new int[layout.length];
+                pixelStarts[l] = new int[layout.length][];
+                int position = 0;
+                for (int s = 0; s < layout.length; s++) {
+                    int samples = samplesFor(layout[s].durationMs, sampleRate);
+                    starts[l][s] = position;
+                    lengths[l][s] = samples;
+                    if (layout[s].isScan()) {
+                        pixelStarts[l][s] = pixelStarts(samples, layout[s].pixels);
+                    }
+                    position += samples;
+                    if (layout[s].isSync()) {
+                        syncEnds[l] = position;
+                    }
+                }
+                lineLengths[l] = position;
+            }
+
+            int sync = 0;
+            while (!mode.layouts[0][sync].isSync()) {
+                sync++;
+            }
+            syncLength = lengths[0][sync];
+            porchLength = lengths[0][(sync + 1) % lengths[0].length];
+        }
+
+        public SstvMode getMode() {
+            return mode;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getPreambleLength(int index) {
+            return preambleLengths[index];
+        }
+
+        /** First sample of a segment, counted from the start of its line. */
+        public int getStart(int layout, int segment) {
+            return starts[layout][segment];
+        }
+
+        public int getLength(int layout, int segment) {
+            return lengths[layout][segment];
+        }
+
+        /**
+         * For a scan of {@code n} pixels, {@code n + 1} offsets into the scan: pixel {@code p}
+         * covers samples {@code [table[p], table[p + 1])}. {@code null} for tones.
+         */
+        public int[] getPixelStarts(int layout, int segment) {
+            return pixelStarts[layout][segment];
+        }
+
+        /** Offset from the start of a line to the end of its sync pulse. */
+        public int getSyncEnd(int layout) {
+            return syncEnds[layout];
+        }
+
+        public int getLineLength(int layout) {
+            return lineLengths[layout];
+        }
+
+        /** Nominal distance between consecutive sync pulses, taken from the first layout. */
+        public int getLinePeriod() {
+            return lineLengths[0];
+        }
+
+        public int getSyncLength() {
+            return syncLength;
+        }
+
+        /** Length of the segment that follows the sync pulse. */
+        public int getPorchLength() {
+            return porchLength;
+        }
+
+        /** Samples from the end of the VIS header to the end of the last line. */
+        public int getTransmissionLength() {
+            int total = 0;
+            for (int length : preambleLengths) {
+                total += length;
+            }
+            int lines = mode.getLines();
+            for (int l = 0; l < lineLengths.length; l++) {
+                total += lineLengths[l] * ((lines - l + lineLengths.length - 1) / lineLengths.length);
+            }
+            return total;
+        }
+
+        /** Sample {@code i} of a scan shows pixel {@code (int) ((float) i / samples * pixels)}. */
+        private static int[] pixelStarts(int samples, int pixels) {
+            int[] table = new int[pixels + 1];
+            int i = 0;
+            for (int p = 0; p < pixels; p++) {
+                table[p] = i;
+                while (i < samples && Math.min((int) ((float) i / samples * pixels), pixels - 1) == p) {
+                    i++;
+                }
+            }
+            table[pixels] = samples;
+            return table;
+        }
+    }
+
+    private static Segment[] robot36Line(double separator, Channel chroma) {
+        return new Segment[]{
+                Segment.sync(9), Segment.tone(BLACK_FREQ, 3), Segment.scan(Channel.Y, 88, 320),
+                Segment.tone(separator, 4.5f), Segment.tone(1900, 1.5f), Segment.scan(chroma, 44, 160)};
+    }
+
+    private static SstvMode martin(String name, int visCode, float scanMs) {
+        Segment separator = Segment.tone(BLACK_FREQ, 0.572f);
+        return new SstvMode(name, visCode, 320, 256, ColorSpace.RGB, 1, NO_PREAMBLE, new Segment[]{
+                Segment.sync(4.862f), separator, Segment.scan(Channel.G, scanMs, 320),
+                separator, Segment.scan(Channel.B, scanMs, 320),
+                separator, Segment.scan(Channel.R, scanMs, 320), separator});
+    }
+
+    /** Scottie puts the sync between blue and red, with one extra sync before the first line. */
+    private static SstvMode scottie(String name, int visCode, float scanMs) {
+        Segment separator = Segment.tone(BLACK_FREQ, 1.5f);
+        return new SstvMode(name, visCode, 320, 256, ColorSpace.RGB, 1, new Segment[]{Segment.sync(9)}, new Segment[]{
+                separator, Segment.scan(Channel.G, scanMs, 320),
+                separator, Segment.scan(Channel.B, scanMs, 320),
+                Segment.sync(9), separator, Segment.scan(Channel.R, scanMs, 320)});
+    }
+
+    /** PD sends the luma of two rows around the chroma they share. */
+    private static SstvMode pd(String name, int visCode, int width, int height, float scanMs) {
+        return new SstvMode(name, visCode, width, height, ColorSpace.YUV, 2, NO_PREAMBLE, new Segment[]{
+                Segment.sync(20), Segment.tone(BLACK_FREQ, 2.08f),
+                Segment.scan(Channel.Y, scanMs, width, 0),
+                Segment.scan(Channel.V, scanMs, width, Segment.ALL_ROWS),
+                Segment.scan(Channel.U, scanMs, width, Segment.ALL_ROWS),
+                Segment.scan(Channel.Y, scanMs, width, 1)});
+    }
+
+    private static int samplesFor(float durationMs, int sampleRate) {
+        return (int) (durationMs / 1000 * sampleRate);
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+}
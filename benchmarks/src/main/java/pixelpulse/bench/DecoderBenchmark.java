@@ -0,0 +1,234 @@
+package pixelpulse.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioFormat;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoder stages, each fed a synthetic recording of 1, 10 or 100 Robot36 images. Inputs for the
+ * later stages are built from one image's worth of real decoder output, tiled to length, so
+ * setting up the long runs does not need the whole-file FFT.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DecoderBenchmark {
+    private static final int SMOOTHING_WINDOW = 5;
+    private static final int CHUNK = 1000;
+    private static final int IMAGE_WIDTH = 800;
+    private static final int IMAGE_HEIGHT = 320;
+
+    private static final MethodHandle BYTES_TO_SAMPLES =
+            Sources.method("SstvDecoder", "bytesToSamples", byte[].class, AudioFormat.class);
+    private static final MethodHandle CALCULATE_INSTANTANEOUS_FREQUENCY =
+            Sources.method("SstvDecoder", "calculateInstantaneousFrequency", double[].class, int.class);
+    private static final MethodHandle CALCULATE_INSTANTANEOUS_FREQUENCY_FLOAT =
+            Sources.method("SstvDecoder", "calculateInstantaneousFrequency", float[].class, int.class);
+    private static final MethodHandle DEMODULATE_BASEBAND =
+            Sources.method("BasebandDemodulator", "demodulate", double[].class, int.class, int.class);
+    private static final MethodHandle FACTOR_FOR =
+            Sources.method("BasebandDemodulator", "factorFor", int.class);
+    private static final Class<?> FILTER_TYPE = Sources.type("LowPassFilter$Type");
+    private static final MethodHandle LOW_PASS = Sources.method(
+            MethodType.methodType(void.class, Object.class, int.class, double[].class, double[].class),
+            "LowPassFilter", "apply", FILTER_TYPE, int.class, double[].class, double[].class);
+
+    private static final Class<?> LINE_LISTENER = Sources.type("LineScanner$LineListener");
+    private static final Class<?> TIMING = Sources.type("SstvMode$Timing");
+    private static final MethodHandle NEW_SCANLINE_WRITER = Sources.constructor(
+            MethodType.methodType(Object.class, BufferedImage.class), "ScanlineWriter", BufferedImage.class);
+    private static final MethodHandle NEW_LINE_SCANNER = Sources.constructor(
+            MethodType.methodType(Object.class, Object.class, int.class, int.class, double.class, double.class, Object.class),
+            "LineScanner", TIMING, int.class, int.class, double.class, double.class, LINE_LISTENER);
+    private static final MethodHandle PROCESS = Sources.method(
+            MethodType.methodType(void.class, Object.class, double[].class, int.class, int.class),
+            "LineScanner", "process", double[].class, int.class, int.class);
+    private static final MethodHandle FINISH = Sources.method(
+            MethodType.methodType(void.class, Object.class), "LineScanner", "finish");
+    private static final MethodHandle GET_LINE_COUNT = Sources.method(
+            MethodType.methodType(int.class, Object.class), "LineScanner", "getLineCount");
+
+    private static final MethodHandle CREATE_COLOR_IMAGE = Sources.method(
+            MethodType.methodType(BufferedImage.class, Object.class), "ModeSampler", "createImage", Sources.type("SstvMode"));
+    private static final MethodHandle NEW_MODE_SAMPLER = Sources.constructor(
+            MethodType.methodType(Object.class, Object.class, BufferedImage.class, double.class, double.class),
+            "ModeSampler", TIMING, BufferedImage.class, double.class, double.class);
+    private static final MethodHandle NEW_SAMPLED_LINE_SCANNER = Sources.constructor(
+            MethodType.methodType(Object.class, Object.class, Object.class),
+            "LineScanner", Sources.type("LineScanner$LineSampler"), TIMING);
+    private static final MethodHandle GET_LINES_DECODED = Sources.method(
+            MethodType.methodType(int.class, Object.class), "ModeSampler", "getLinesDecoded");
+
+    @State(Scope.Benchmark)
+    public static class Pcm {
+        @Param({"1", "10", "100"})
+        public int images;
+
+        byte[] bytes;
+        AudioFormat format;
+
+        @Setup
+        public void setUp() {
+            bytes = SyntheticSignal.robot36Pcm(images);
+            format = SyntheticSignal.format();
+        }
+    }
+
+    /** The whole-file analytic signal needs several times the recording in heap, so it stops at 10. */
+    @State(Scope.Benchmark)
+    public static class Samples {
+        @Param({"1", "10"})
+        public int images;
+
+        double[] samples;
+        float[] floatSamples;
+
+        @Setup
+        public void setUp() throws Throwable {
+            samples = samples(images);
+            floatSamples = new float[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                floatSamples[i] = (float) samples[i];
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Frequency {
+        @Param({"1", "10", "100"})
+        public int images;
+
+        @Param({"BOXCAR", "FIR", "BIQUAD"})
+        public String filter;
+
+        double[] raw;
+        double[] smoothed;
+        Object type;
+
+        @Setup
+        public void setUp() throws Throwable {
+            raw = SyntheticSignal.tile(instantaneousFrequency(), images);
+            smoothed = new double[raw.length];
+            type = filterType(filter);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SmoothedFrequency {
+        @Param({"1", "10", "100"})
+        public int images;
+
+        double[] smoothed;
+        int imageLength;
+        BufferedImage image;
+        BufferedImage colorImage;
+
+        @Setup
+        public void setUp() throws Throwable {
+            image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+            colorImage = (BufferedImage) CREATE_COLOR_IMAGE.invokeExact(SyntheticSignal.ROBOT36);
+            double[] one = instantaneousFrequency();
+            LOW_PASS.invokeExact(filterType("BOXCAR"), SMOOTHING_WINDOW, one, one);
+            smoothed = SyntheticSignal.tile(one, images);
+            imageLength = one.length;
+        }
+    }
+
+    @Benchmark
+    public double[] bytesToSamples(Pcm pcm) throws Throwable {
+        return (double[]) BYTES_TO_SAMPLES.invokeExact(pcm.bytes, pcm.format);
+    }
+
+    @Benchmark
+    public double[] calculateInstantaneousFrequency(Samples state) throws Throwable {
+        return (double[]) CALCULATE_INSTANTANEOUS_FREQUENCY.invokeExact(state.samples, SyntheticSignal.SAMPLE_RATE);
+    }
+
+    /** The single-precision decode's version, on the same samples rounded to float. */
+    @Benchmark
+    public float[] calculateInstantaneousFrequencyFloat(Samples state) throws Throwable {
+        return (float[]) CALCULATE_INSTANTANEOUS_FREQUENCY_FLOAT.invokeExact(state.floatSamples, SyntheticSignal.SAMPLE_RATE);
+    }
+
+    /** The decimating front end's replacement for it, producing a quarter as many frequencies at 44.1 kHz. */
+    @Benchmark
+    public double[] demodulateBaseband(Samples state) throws Throwable {
+        int factor = (int) FACTOR_FOR.invokeExact(SyntheticSignal.SAMPLE_RATE);
+        return (double[]) DEMODULATE_BASEBAND.invokeExact(state.samples, SyntheticSignal.SAMPLE_RATE, factor);
+    }
+
+    @Benchmark
+    public double[] lowPass(Frequency state) throws Throwable {
+        LOW_PASS.invokeExact(state.type, SMOOTHING_WINDOW, state.raw, state.smoothed);
+        return state.smoothed;
+    }
+
+    /**
+     * Sync detection, pixel sampling and writing lines into the image, fed in the same chunk
+     * size as the whole-file decode.
+     */
+    @Benchmark
+    public int scanlines(SmoothedFrequency state) throws Throwable {
+        Object listener = NEW_SCANLINE_WRITER.invokeExact(state.image);
+        Object scanner = NEW_LINE_SCANNER.invokeExact(SyntheticSignal.ROBOT36_TIMING, IMAGE_WIDTH, IMAGE_HEIGHT, 1500.0, 2300.0, listener);
+        double[] frequency = state.smoothed;
+        for (int i = 0; i < frequency.length; i += CHUNK) {
+            PROCESS.invokeExact(scanner, frequency, i, Math.min(CHUNK, frequency.length - i));
+        }
+        FINISH.invokeExact(scanner);
+        return (int) GET_LINE_COUNT.invokeExact(scanner);
+    }
+
+    /**
+     * Robot36 colour decode of each image in turn: sync edges, separator check, Y and chroma
+     * sampling and the YUV to RGB rows.
+     */
+    @Benchmark
+    public int colorScanlines(SmoothedFrequency state) throws Throwable {
+        double[] frequency = state.smoothed;
+        int lines = 0;
+        for (int start = 0; start < frequency.length; start += state.imageLength) {
+            Object sampler = NEW_MODE_SAMPLER.invokeExact(SyntheticSignal.ROBOT36_TIMING, state.colorImage, 1500.0, 2300.0);
+            Object scanner = NEW_SAMPLED_LINE_SCANNER.invokeExact(sampler, SyntheticSignal.ROBOT36_TIMING);
+            int end = start + state.imageLength;
+            for (int i = start; i < end; i += CHUNK) {
+                PROCESS.invokeExact(scanner, frequency, i, Math.min(CHUNK, end - i));
+            }
+            FINISH.invokeExact(scanner);
+            lines += (int) GET_LINES_DECODED.invokeExact(sampler);
+        }
+        return lines;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object filterType(String name) {
+        return Enum.valueOf((Class) FILTER_TYPE, name);
+    }
+
+    private static double[] samples(int images) throws Throwable {
+        Pcm pcm = new Pcm();
+        pcm.images = images;
+        pcm.setUp();
+        return (double[]) BYTES_TO_SAMPLES.invokeExact(pcm.bytes, pcm.format);
+    }
+
+    private static double[] instantaneousFrequency() throws Throwable {
+        return (double[]) CALCULATE_INSTANTANEOUS_FREQUENCY.invokeExact(samples(1), SyntheticSignal.SAMPLE_RATE);
+    }
+}
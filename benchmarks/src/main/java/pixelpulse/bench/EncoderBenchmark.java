@@ -0,0 +1,141 @@
+package pixelpulse.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoder hot paths over 1, 10 and 100 Robot36 images. The forked JVM has the Vector API
+ * module, so {@code vector} compares it with the scalar conversion on the same JIT.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EncoderBenchmark {
+    private static final int TONE_SAMPLES = SyntheticSignal.SAMPLE_RATE;
+    private static final double RADIANS_PER_STEP = 2 * Math.PI / 4294967296.0;
+
+    private static final Class<?> OSCILLATOR_MODE = Sources.type("Oscillator$Mode");
+    private static final MethodHandle NEW_OSCILLATOR = Sources.constructor(
+            MethodType.methodType(Object.class, double.class, Object.class, int.class),
+            "Oscillator", double.class, OSCILLATOR_MODE, int.class);
+    private static final MethodHandle PHASE_INCREMENT = Sources.method(
+            MethodType.methodType(int.class, Object.class, double.class), "Oscillator", "phaseIncrement", double.class);
+    private static final MethodHandle NEXT = Sources.method(
+            MethodType.methodType(double.class, Object.class, int.class), "Oscillator", "next", int.class);
+
+    @State(Scope.Benchmark)
+    public static class Frames {
+        @Param({"1", "10", "100"})
+        public int images;
+
+        @Param({"true", "false"})
+        public boolean vector;
+
+        BufferedImage frames;
+        Object yuv;
+        Path wav;
+
+        @Setup
+        public void setUp() throws IOException {
+            frames = SyntheticSignal.testCard(SyntheticSignal.IMAGE_WIDTH, SyntheticSignal.IMAGE_HEIGHT * images);
+            yuv = SyntheticSignal.yuv(SyntheticSignal.testCard(SyntheticSignal.IMAGE_WIDTH, SyntheticSignal.IMAGE_HEIGHT), vector);
+            wav = Files.createTempFile("robot36", ".wav");
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(wav);
+        }
+    }
+
+    /**
+     * One oscillator per sine source and table size. Setup prints the tone's SNR against an
+     * ideal sine over a minute of samples, so table size and interpolation can be weighed
+     * against the exact path's speed.
+     */
+    @State(Scope.Benchmark)
+    public static class Tone {
+        @Param({"EXACT", "TABLE", "INTERPOLATED"})
+        public String mode;
+
+        @Param({"12"})
+        public int tableBits;
+
+        @Param({"1900"})
+        public double frequency;
+
+        Object oscillator;
+        int increment;
+
+        @Setup
+        public void setUp() throws Throwable {
+            oscillator = newOscillator(mode, tableBits);
+            increment = (int) PHASE_INCREMENT.invokeExact(oscillator, frequency);
+
+            Object probe = newOscillator(mode, tableBits);
+            double signal = 0;
+            double noise = 0;
+            for (int i = 0; i < SyntheticSignal.SAMPLE_RATE * 60; i++) {
+                double ideal = Math.sin(((long) i * increment & 0xFFFFFFFFL) * RADIANS_PER_STEP);
+                double error = (double) NEXT.invokeExact(probe, increment) - ideal;
+                signal += ideal * ideal;
+                noise += error * error;
+            }
+            double snr = noise == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(signal / noise);
+            System.out.printf(Locale.ROOT, "%s, %d table bits: SNR %.1f dB%n", mode, tableBits, snr);
+        }
+    }
+
+    /** The frames are stacked vertically, so one call converts every image. */
+    @Benchmark
+    public Object convertRgbToYuv(Frames state) {
+        return SyntheticSignal.yuv(state.frames, state.vector);
+    }
+
+    /** The encoder's streaming path: one reused buffer drained into a WAV file, which is overwritten each time. */
+    @Benchmark
+    public void writeRobot36Wav(Frames state) {
+        for (int i = 0; i < state.images; i++) {
+            SyntheticSignal.writeRobot36Wav(state.yuv, state.wav);
+        }
+    }
+
+    /** One second of a steady tone, every sample handed to the blackhole. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void oscillator(Tone state, Blackhole blackhole) throws Throwable {
+        Object oscillator = state.oscillator;
+        int increment = state.increment;
+        for (int i = 0; i < TONE_SAMPLES; i++) {
+            blackhole.consume((double) NEXT.invokeExact(oscillator, increment));
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object newOscillator(String mode, int tableBits) throws Throwable {
+        Object sineSource = Enum.valueOf((Class) OSCILLATOR_MODE, mode);
+        return (Object) NEW_OSCILLATOR.invokeExact((double) SyntheticSignal.SAMPLE_RATE, sineSource, tableBits);
+    }
+}
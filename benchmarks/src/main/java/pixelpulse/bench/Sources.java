@@ -0,0 +1,50 @@
+package pixelpulse.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Handles onto the encoder and decoder sources. Those classes live in the default package,
+ * which cannot be imported and is rejected by JMH, so the benchmarks reach them by name.
+ * Handles are stored in {@code static final} fields so the JIT treats them as constants.
+ */
+final class Sources {
+    private Sources() {
+    }
+
+    static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Missing class " + className, e);
+        }
+    }
+
+    static MethodHandle method(String className, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type(className).getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing method " + className + "." + name, e);
+        }
+    }
+
+    /** Like {@link #method}, with every parameter and the return type seen through {@code type}. */
+    static MethodHandle method(MethodType type, String className, String name, Class<?>... parameterTypes) {
+        return method(className, name, parameterTypes).asType(type);
+    }
+
+    static MethodHandle constructor(MethodType type, String className, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type(className).getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing constructor of " + className, e);
+        }
+    }
+}
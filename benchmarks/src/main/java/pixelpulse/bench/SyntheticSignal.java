@@ -0,0 +1,138 @@
+package pixelpulse.bench;
+
+import javax.sound.sampled.AudioFormat;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Deterministic Robot36 test material: a 320x240 test card run through the real encoder,
+ * repeated back to back to make recordings several images long.
+ */
+final class SyntheticSignal {
+    static final int SAMPLE_RATE = 44100;
+    static final int IMAGE_WIDTH = 320;
+    static final int IMAGE_HEIGHT = 240;
+
+    private static final MethodHandle YUV = Sources.method(
+            MethodType.methodType(Object.class, BufferedImage.class, boolean.class, boolean.class),
+            "PlaneConverter", "yuv", BufferedImage.class, boolean.class, boolean.class);
+    private static final MethodHandle USES_VECTOR = Sources.method("PlaneConverter", "usesVector");
+    private static final MethodHandle FOR_VIS_CODE = Sources.method(
+            MethodType.methodType(Object.class, int.class), "SstvMode", "forVisCode", int.class);
+    private static final MethodHandle TIMING = Sources.method(
+            MethodType.methodType(Object.class, Object.class, int.class), "SstvMode", "timing", int.class);
+    private static final MethodHandle WRITE_WAV = Sources.method(
+            MethodType.methodType(void.class, Object.class, Object.class, Path.class),
+            "JpgToSstvEncoder", "writeWav", Sources.type("SstvMode$Timing"), Sources.type("ChannelPlanes"), Path.class);
+    private static final int WAV_HEADER_SIZE = 44;
+
+    /** The Robot36 {@code SstvMode} and its timing tables at {@link #SAMPLE_RATE}. */
+    static final Object ROBOT36 = invoke(() -> FOR_VIS_CODE.invokeExact(8));
+    static final Object ROBOT36_TIMING = invoke(() -> TIMING.invokeExact(ROBOT36, SAMPLE_RATE));
+
+    private SyntheticSignal() {
+    }
+
+    /** Colour bars over a horizontal luminance ramp, with a diagonal gradient for texture. */
+    static BufferedImage testCard(int width, int height) {
+        int[] bars = {0xFFFFFF, 0xFFFF00, 0x00FFFF, 0x00FF00, 0xFF00FF, 0xFF0000, 0x0000FF, 0x000000};
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb;
+                if (y % IMAGE_HEIGHT < IMAGE_HEIGHT / 2) {
+                    rgb = bars[x * bars.length / width];
+                } else {
+                    int level = x * 255 / (width - 1);
+                    int shade = (x + y) & 0xFF;
+                    rgb = level << 16 | shade << 8 | (255 - level);
+                }
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    /** 16-bit little-endian mono PCM holding {@code images} consecutive transmissions. */
+    static byte[] robot36Pcm(int images) {
+        byte[] wav;
+        try {
+            Path file = Files.createTempFile("robot36", ".wav");
+            try {
+                writeRobot36Wav(yuv(testCard(IMAGE_WIDTH, IMAGE_HEIGHT), usesVector()), file);
+                wav = Files.readAllBytes(file);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int length = wav.length - WAV_HEADER_SIZE;
+        byte[] pcm = new byte[Math.multiplyExact(length, images)];
+        for (int i = 0; i < images; i++) {
+            System.arraycopy(wav, WAV_HEADER_SIZE, pcm, i * length, length);
+        }
+        return pcm;
+    }
+
+    static AudioFormat format() {
+        return new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+    }
+
+    static double[] tile(double[] one, int times) {
+        double[] out = new double[Math.multiplyExact(one.length, times)];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(one, 0, out, i * one.length, one.length);
+        }
+        return out;
+    }
+
+    /** True if the encoder converts with the Vector API when left to choose. */
+    static boolean usesVector() {
+        return (boolean) invoke(() -> (boolean) USES_VECTOR.invokeExact());
+    }
+
+    /**
+     * The encoder's Robot36 {@code ChannelPlanes} for {@code image}, chroma at half width,
+     * converted with or without the Vector API.
+     */
+    static Object yuv(BufferedImage image, boolean vector) {
+        return invoke(() -> YUV.invokeExact(image, true, vector));
+    }
+
+    /** Encodes one transmission to {@code file} the way the encoder does, streaming through its WAV writer. */
+    static void writeRobot36Wav(Object yuv, Path file) {
+        try {
+            WRITE_WAV.invokeExact(ROBOT36_TIMING, yuv, file);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private interface Call {
+        Object run() throws Throwable;
+    }
+
+    private static Object invoke(Call call) {
+        try {
+            return call.run();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}